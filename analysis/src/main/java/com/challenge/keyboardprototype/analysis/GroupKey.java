@@ -0,0 +1,56 @@
+package com.challenge.keyboardprototype.analysis;
+
+/**
+ * The participant, keyboard type and entry method that trials are grouped by.
+ */
+final class GroupKey implements Comparable<GroupKey> {
+    private final String m_participantId;
+    private final String m_keyboardType;
+    private final String m_entryMethod;
+
+    GroupKey(String participantId, String keyboardType, String entryMethod) {
+        m_participantId = participantId;
+        m_keyboardType = keyboardType;
+        m_entryMethod = entryMethod;
+    }
+
+    String getParticipantId() {
+        return m_participantId;
+    }
+
+    String getKeyboardType() {
+        return m_keyboardType;
+    }
+
+    String getEntryMethod() {
+        return m_entryMethod;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof GroupKey)) {
+            return false;
+        }
+        GroupKey key = (GroupKey) other;
+        return m_participantId.equals(key.m_participantId) &&
+                m_keyboardType.equals(key.m_keyboardType) &&
+                m_entryMethod.equals(key.m_entryMethod);
+    }
+
+    @Override
+    public int hashCode() {
+        return (m_participantId.hashCode() * 31 + m_keyboardType.hashCode()) * 31 + m_entryMethod.hashCode();
+    }
+
+    @Override
+    public int compareTo(GroupKey other) {
+        int result = m_participantId.compareTo(other.m_participantId);
+        if (result == 0) {
+            result = m_keyboardType.compareTo(other.m_keyboardType);
+        }
+        if (result == 0) {
+            result = m_entryMethod.compareTo(other.m_entryMethod);
+        }
+        return result;
+    }
+}
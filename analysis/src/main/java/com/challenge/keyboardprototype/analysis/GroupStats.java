@@ -0,0 +1,123 @@
+package com.challenge.keyboardprototype.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Running totals for the trials of one group, including the learning curve: totals by the
+ * index of the trial among its session's trials on the same keyboard.
+ */
+final class GroupStats {
+    private int m_trials;
+    private int m_errors;
+    private long m_totalDurationMs;
+    private long m_totalChars;
+    private int[] m_durations = new int[16];
+
+    private long[] m_durationByIndex = new long[4];
+    private int[] m_trialsByIndex = new int[4];
+    private int[] m_errorsByIndex = new int[4];
+
+    /**
+     * @param trialIndex zero based index of the trial on its keyboard within its session
+     * @param enteredChars length of the entered word
+     */
+    void add(int trialIndex, int durationMs, int enteredChars, boolean error) {
+        if (m_trials == m_durations.length) {
+            m_durations = Arrays.copyOf(m_durations, m_trials * 2);
+        }
+        m_durations[m_trials++] = durationMs;
+        m_totalDurationMs += durationMs;
+        m_totalChars += enteredChars;
+        if (error) {
+            ++m_errors;
+        }
+
+        ensureIndexCapacity(trialIndex + 1);
+        m_durationByIndex[trialIndex] += durationMs;
+        ++m_trialsByIndex[trialIndex];
+        if (error) {
+            ++m_errorsByIndex[trialIndex];
+        }
+    }
+
+    void merge(GroupStats other) {
+        if (m_trials + other.m_trials > m_durations.length) {
+            m_durations = Arrays.copyOf(m_durations, m_trials + other.m_trials);
+        }
+        System.arraycopy(other.m_durations, 0, m_durations, m_trials, other.m_trials);
+        m_trials += other.m_trials;
+        m_errors += other.m_errors;
+        m_totalDurationMs += other.m_totalDurationMs;
+        m_totalChars += other.m_totalChars;
+
+        ensureIndexCapacity(other.m_trialsByIndex.length);
+        for (int i = 0; i < other.m_trialsByIndex.length; ++i) {
+            m_durationByIndex[i] += other.m_durationByIndex[i];
+            m_trialsByIndex[i] += other.m_trialsByIndex[i];
+            m_errorsByIndex[i] += other.m_errorsByIndex[i];
+        }
+    }
+
+    private void ensureIndexCapacity(int size) {
+        if (size > m_trialsByIndex.length) {
+            int capacity = Math.max(size, m_trialsByIndex.length * 2);
+            m_durationByIndex = Arrays.copyOf(m_durationByIndex, capacity);
+            m_trialsByIndex = Arrays.copyOf(m_trialsByIndex, capacity);
+            m_errorsByIndex = Arrays.copyOf(m_errorsByIndex, capacity);
+        }
+    }
+
+    int getTrials() {
+        return m_trials;
+    }
+
+    /**
+     * @return words per minute, counting five entered characters as one word
+     */
+    double getWordsPerMinute() {
+        return m_totalDurationMs == 0 ? 0 : (m_totalChars / 5.0) / (m_totalDurationMs / 60000.0);
+    }
+
+    double getMeanDurationMs() {
+        return m_trials == 0 ? 0 : (double) m_totalDurationMs / m_trials;
+    }
+
+    double getMedianDurationMs() {
+        if (m_trials == 0) {
+            return 0;
+        }
+        int[] sorted = Arrays.copyOf(m_durations, m_trials);
+        Arrays.sort(sorted);
+        final int middle = m_trials / 2;
+        return m_trials % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + (double) sorted[middle]) / 2;
+    }
+
+    double getErrorRate() {
+        return m_trials == 0 ? 0 : (double) m_errors / m_trials;
+    }
+
+    /**
+     * @return one more than the highest trial index seen
+     */
+    int getTrialIndexCount() {
+        int count = m_trialsByIndex.length;
+        while (count > 0 && m_trialsByIndex[count - 1] == 0) {
+            --count;
+        }
+        return count;
+    }
+
+    int getTrials(int trialIndex) {
+        return m_trialsByIndex[trialIndex];
+    }
+
+    double getMeanDurationMs(int trialIndex) {
+        int trials = m_trialsByIndex[trialIndex];
+        return trials == 0 ? 0 : (double) m_durationByIndex[trialIndex] / trials;
+    }
+
+    double getErrorRate(int trialIndex) {
+        int trials = m_trialsByIndex[trialIndex];
+        return trials == 0 ? 0 : (double) m_errorsByIndex[trialIndex] / trials;
+    }
+}
@@ -0,0 +1,232 @@
+package com.challenge.keyboardprototype.analysis;
+
+import com.opencsv.CSVWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Command line tool that summarizes exported trial data files, using every core.
+ *
+ * Files are split between fork/join workers, each streaming its files into per group totals
+ * which are merged pairwise as the workers finish. Two reports are written:
+ * {@code summary.csv} per participant, keyboard type and entry method, and
+ * {@code learning_curve.csv} which breaks each group down by trial index.
+ *
+ * Usage: {@code TrialAnalyzer <output dir> <file or dir>...}
+ */
+public final class TrialAnalyzer {
+    private static final String EXPORT_PREFIX = "KeyboardTrialData_";
+    private static final String EXPORT_SUFFIX = ".csv";
+
+    private TrialAnalyzer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TrialAnalyzer <output dir> <file or dir>...");
+            System.exit(1);
+        }
+
+        File outputDir = new File(args[0]);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Unable to create " + outputDir);
+        }
+
+        List<File> files = new ArrayList<>();
+        for (int i = 1; i < args.length; ++i) {
+            addExportFiles(new File(args[i]), files);
+        }
+        Collections.sort(files);
+
+        long start = System.currentTimeMillis();
+        Map<GroupKey, GroupStats> groups = analyze(files);
+        writeSummary(new File(outputDir, "summary.csv"), groups);
+        writeLearningCurve(new File(outputDir, "learning_curve.csv"), groups);
+
+        System.out.println("Analyzed " + files.size() + " files into " + groups.size() + " groups in " +
+                (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private static void addExportFiles(File file, List<File> files) {
+        if (!file.isDirectory()) {
+            files.add(file);
+            return;
+        }
+
+        File[] children = file.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File child) {
+                return child.isDirectory() ||
+                        (child.getName().startsWith(EXPORT_PREFIX) && child.getName().endsWith(EXPORT_SUFFIX));
+            }
+        });
+        if (children != null) {
+            for (File child : children) {
+                addExportFiles(child, files);
+            }
+        }
+    }
+
+    static Map<GroupKey, GroupStats> analyze(List<File> files) throws IOException {
+        Set<String> seenTrials = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        try {
+            return new ForkJoinPool().invoke(new AnalyzeTask(files, 0, files.size(), seenTrials));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeSummary(File file, Map<GroupKey, GroupStats> groups) throws IOException {
+        CSVWriter out = new CSVWriter(new BufferedWriter(new FileWriter(file)));
+        try {
+            out.writeNext(new String[] {
+                    "participant_id",
+                    "keyboard_type",
+                    "entry_method",
+                    "trials",
+                    "words_per_minute",
+                    "mean_duration_ms",
+                    "median_duration_ms",
+                    "error_rate",
+            });
+            for (Map.Entry<GroupKey, GroupStats> entry : new TreeMap<>(groups).entrySet()) {
+                GroupKey key = entry.getKey();
+                GroupStats stats = entry.getValue();
+                out.writeNext(new String[] {
+                        key.getParticipantId(),
+                        key.getKeyboardType(),
+                        key.getEntryMethod(),
+                        Integer.toString(stats.getTrials()),
+                        format(stats.getWordsPerMinute()),
+                        format(stats.getMeanDurationMs()),
+                        format(stats.getMedianDurationMs()),
+                        format(stats.getErrorRate()),
+                });
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeLearningCurve(File file, Map<GroupKey, GroupStats> groups) throws IOException {
+        CSVWriter out = new CSVWriter(new BufferedWriter(new FileWriter(file)));
+        try {
+            out.writeNext(new String[] {
+                    "participant_id",
+                    "keyboard_type",
+                    "entry_method",
+                    "trial_index",
+                    "trials",
+                    "mean_duration_ms",
+                    "error_rate",
+            });
+            for (Map.Entry<GroupKey, GroupStats> entry : new TreeMap<>(groups).entrySet()) {
+                GroupKey key = entry.getKey();
+                GroupStats stats = entry.getValue();
+                for (int i = 0; i < stats.getTrialIndexCount(); ++i) {
+                    if (stats.getTrials(i) == 0) {
+                        continue;
+                    }
+                    out.writeNext(new String[] {
+                            key.getParticipantId(),
+                            key.getKeyboardType(),
+                            key.getEntryMethod(),
+                            Integer.toString(i + 1),
+                            Integer.toString(stats.getTrials(i)),
+                            format(stats.getMeanDurationMs(i)),
+                            format(stats.getErrorRate(i)),
+                    });
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.3f", value);
+    }
+
+    static void merge(Map<GroupKey, GroupStats> into, Map<GroupKey, GroupStats> from) {
+        for (Map.Entry<GroupKey, GroupStats> entry : from.entrySet()) {
+            GroupStats stats = into.get(entry.getKey());
+            if (stats == null) {
+                into.put(entry.getKey(), entry.getValue());
+            } else {
+                stats.merge(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Analyzes a range of files, splitting it in half until each task has a single file.
+     */
+    private static final class AnalyzeTask extends RecursiveTask<Map<GroupKey, GroupStats>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> m_files;
+        private final int m_start;
+        private final int m_end;
+        private final Set<String> m_seenTrials;
+
+        AnalyzeTask(List<File> files, int start, int end, Set<String> seenTrials) {
+            m_files = files;
+            m_start = start;
+            m_end = end;
+            m_seenTrials = seenTrials;
+        }
+
+        @Override
+        protected Map<GroupKey, GroupStats> compute() {
+            if (m_end - m_start <= 1) {
+                if (m_start == m_end) {
+                    return new HashMap<>();
+                }
+                try {
+                    return new TrialFileParser(m_seenTrials).parse(m_files.get(m_start));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            final int middle = (m_start + m_end) >>> 1;
+            AnalyzeTask left = new AnalyzeTask(m_files, m_start, middle, m_seenTrials);
+            AnalyzeTask right = new AnalyzeTask(m_files, middle, m_end, m_seenTrials);
+            left.fork();
+            Map<GroupKey, GroupStats> result = right.compute();
+            merge(result, left.join());
+            return result;
+        }
+    }
+
+    /**
+     * Carries an I/O failure out of a fork/join task.
+     */
+    private static final class UncheckedIOException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedIOException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.challenge.keyboardprototype.analysis;
+
+import com.opencsv.CSVReader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams the rows of one exported trial data file into per group totals.
+ *
+ * Exports are cumulative, so the same trial usually appears in many files. Each trial is only
+ * counted by the first parser to claim it in the shared set of seen trials.
+ */
+final class TrialFileParser {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Set<String> m_seenTrials;
+
+    private int m_participantColumn;
+    private int m_sessionColumn;
+    private int m_trialColumn;
+    private int m_keyboardTypeColumn;
+    private int m_targetWordColumn;
+    private int m_enteredWordColumn;
+    private int m_entryMethodColumn;
+    private int m_trialStartColumn;
+    private int m_durationColumn;
+    private int m_minRowLength;
+
+    TrialFileParser(Set<String> seenTrials) {
+        m_seenTrials = seenTrials;
+    }
+
+    Map<GroupKey, GroupStats> parse(File file) throws IOException {
+        Map<GroupKey, GroupStats> groups = new HashMap<>();
+        // Trials seen so far on each keyboard of each session, for the learning curve
+        Map<String, Integer> sessionKeyboardTrials = new HashMap<>();
+
+        CSVReader reader = new CSVReader(new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), "UTF-8"), BUFFER_SIZE));
+        try {
+            String[] header = reader.readNext();
+            if (header == null) {
+                return groups;
+            }
+            readHeader(file, header);
+
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                if (row.length < m_minRowLength || row[m_entryMethodColumn].isEmpty()) {
+                    // The trial never ended
+                    continue;
+                }
+
+                String participantId = row[m_participantColumn];
+                String keyboardType = row[m_keyboardTypeColumn];
+                String sessionKeyboard = row[m_sessionColumn] + '|' + keyboardType;
+                Integer previousTrials = sessionKeyboardTrials.get(sessionKeyboard);
+                int trialIndex = previousTrials == null ? 0 : previousTrials;
+                sessionKeyboardTrials.put(sessionKeyboard, trialIndex + 1);
+
+                String trialKey = participantId + '|' + row[m_sessionColumn] + '|' + row[m_trialColumn] +
+                        '|' + row[m_trialStartColumn];
+                if (!m_seenTrials.add(trialKey)) {
+                    continue;
+                }
+
+                GroupKey key = new GroupKey(participantId, keyboardType, row[m_entryMethodColumn]);
+                GroupStats stats = groups.get(key);
+                if (stats == null) {
+                    stats = new GroupStats();
+                    groups.put(key, stats);
+                }
+
+                String enteredWord = row[m_enteredWordColumn];
+                stats.add(trialIndex,
+                        Integer.parseInt(row[m_durationColumn]),
+                        enteredWord.length(),
+                        !enteredWord.equals(row[m_targetWordColumn]));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed duration in " + file, e);
+        } finally {
+            reader.close();
+        }
+        return groups;
+    }
+
+    private void readHeader(File file, String[] header) throws IOException {
+        m_participantColumn = column(file, header, "participant_id");
+        m_sessionColumn = column(file, header, "session_id");
+        m_trialColumn = column(file, header, "trial_id");
+        m_keyboardTypeColumn = column(file, header, "keyboard_type");
+        m_targetWordColumn = column(file, header, "target_word");
+        m_enteredWordColumn = column(file, header, "entered_word");
+        m_entryMethodColumn = column(file, header, "entry_method");
+        m_trialStartColumn = column(file, header, "trial_start");
+        m_durationColumn = column(file, header, "duration_ms");
+
+        m_minRowLength = 1 + Math.max(Math.max(Math.max(m_participantColumn, m_sessionColumn),
+                Math.max(m_trialColumn, m_keyboardTypeColumn)), Math.max(Math.max(m_targetWordColumn,
+                m_enteredWordColumn), Math.max(Math.max(m_entryMethodColumn, m_trialStartColumn), m_durationColumn)));
+    }
+
+    private static int column(File file, String[] header, String name) throws IOException {
+        for (int i = 0; i < header.length; ++i) {
+            if (header[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IOException(file + " has no " + name + " column.");
+    }
+}
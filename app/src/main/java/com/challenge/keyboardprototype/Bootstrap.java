@@ -0,0 +1,280 @@
+package com.challenge.keyboardprototype;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import com.challenge.keyboardprototype.db.AsyncDatabase;
+import com.challenge.keyboardprototype.db.SuggestionIndex;
+import com.challenge.keyboardprototype.model.KeyboardType;
+import com.challenge.keyboardprototype.model.Session;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Opens the database and loads the dictionary in the background when the app starts, and keeps
+ * the next session's keyboard order and first target words ready ahead of time.
+ *
+ * Activities render straight away and enable their controls from {@link #whenReady}. Background
+ * work that needs the database can block on {@link #getReadiness} instead.
+ *
+ * When the dictionary table changes, {@link #reloadDictionary} makes the bootstrap not ready again
+ * until the new dictionary is fully loaded, and only then replaces the old one, so the main thread
+ * never has to load it.
+ */
+public class Bootstrap {
+    private static final String TAG = "KB-Bootstrap";
+    private static final List<KeyboardType> DEFAULT_KEYBOARD_ORDER = Arrays.asList(KeyboardType.values());
+
+    // Runs initialization and preparation tasks one at a time, in order
+    private final Executor m_executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, TAG);
+        }
+    });
+    private final Handler m_mainHandler = new Handler(Looper.getMainLooper());
+    private final FutureTask<Void> m_readiness;
+
+    // Main thread state
+    private final List<Runnable> m_readyCallbacks = new ArrayList<>();
+    private boolean m_ready;
+    // Loads started but not yet finished, including the first
+    private int m_pendingLoads = 1;
+
+    // Guarded by this
+    private boolean m_dictionaryImportNeeded;
+    private List<KeyboardType> m_nextKeyboardOrder = DEFAULT_KEYBOARD_ORDER;
+    private final Deque<String> m_nextTargetWords = new ArrayDeque<>();
+
+    Bootstrap() {
+        m_readiness = startLoad(new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException, ExecutionException {
+                initialize();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Runs a load on the executor, and marks the bootstrap ready on the main thread once it and
+     * every other pending load are done.
+     */
+    private FutureTask<Void> startLoad(Callable<Void> load) {
+        FutureTask<Void> future = new FutureTask<Void>(load) {
+            @Override
+            protected void done() {
+                final FutureTask<Void> future = this;
+                m_mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoaded(future);
+                    }
+                });
+            }
+        };
+        m_executor.execute(future);
+        return future;
+    }
+
+    private void initialize() throws InterruptedException, ExecutionException {
+        long start = System.currentTimeMillis();
+        // The database is read on the reader pool while the dictionary loads here
+        AsyncDatabase db = KeyboardApp.getAsyncDatabase();
+        Future<Integer> wordCount = db.getWordCount(null);
+        Future<Session> lastCompletedSession = db.getLastCompletedSession(null);
+        SuggestionIndex index = KeyboardApp.loadSuggestionIndex();
+        ensureSignatures(index);
+        KeyboardApp.setSuggestionIndex(index);
+        // The dictionary table is only needed when the prebuilt dictionary asset is unavailable
+        boolean importNeeded = !index.isPrebuilt() && wordCount.get() == 0;
+
+        Session lastSession = lastCompletedSession.get();
+        List<KeyboardType> keyboardOrder = lastSession == null ?
+                DEFAULT_KEYBOARD_ORDER : KeyboardType.nextKeyboardOrder(lastSession.getKeyboardOrder());
+        synchronized (this) {
+            m_dictionaryImportNeeded = importNeeded;
+            m_nextKeyboardOrder = keyboardOrder;
+        }
+        prepareTargetWords();
+
+        Log.i(TAG, "Ready in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Waits for the writer thread to build the signature index that suggestions fall back to
+     * when the dictionary did not come from the prebuilt asset.
+     */
+    private static void ensureSignatures(SuggestionIndex index) throws InterruptedException, ExecutionException {
+        if (!index.isPrebuilt()) {
+            KeyboardApp.getAsyncDatabase().ensureSignatures(null).get();
+        }
+    }
+
+    /**
+     * Draws the target words for every trial of the next session.
+     */
+    private void prepareTargetWords() {
+        final int numWords;
+        synchronized (this) {
+            numWords = Math.max(0,
+                    m_nextKeyboardOrder.size() * KeyboardApp.getTrialsPerKeyboard() - m_nextTargetWords.size());
+        }
+
+        SuggestionIndex index = KeyboardApp.getSuggestionIndex();
+        List<String> words = new ArrayList<>(numWords);
+        for (int i = 0; i < numWords; ++i) {
+            String word = index.getRandomWord();
+            if (word == null) {
+                break;
+            }
+            words.add(word);
+        }
+
+        synchronized (this) {
+            m_nextTargetWords.addAll(words);
+        }
+    }
+
+    private void onLoaded(Future<Void> load) {
+        try {
+            load.get();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Loading the database or dictionary failed.", e.getCause());
+        }
+
+        if (--m_pendingLoads > 0) {
+            return;
+        }
+        m_ready = true;
+        for (Runnable callback : m_readyCallbacks) {
+            callback.run();
+        }
+        m_readyCallbacks.clear();
+    }
+
+    /**
+     * @return completes once the database is open and the dictionary is first loaded
+     */
+    public Future<Void> getReadiness() {
+        return m_readiness;
+    }
+
+    /**
+     * Blocks until the database is open and the dictionary is loaded. Must not be called from the
+     * main thread.
+     */
+    public void awaitReady() {
+        try {
+            m_readiness.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for initialization.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("App initialization failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Must only be called from the main thread.
+     */
+    public boolean isReady() {
+        return m_ready;
+    }
+
+    /**
+     * Runs the callback on the main thread once initialization is done, or right away if it
+     * already is. Must only be called from the main thread.
+     */
+    public void whenReady(Runnable callback) {
+        if (m_ready) {
+            callback.run();
+        } else {
+            m_readyCallbacks.add(callback);
+        }
+    }
+
+    /**
+     * @return true, once only, if the dictionary table needs to be imported
+     */
+    public synchronized boolean claimDictionaryImport() {
+        boolean needed = m_dictionaryImportNeeded;
+        m_dictionaryImportNeeded = false;
+        return needed;
+    }
+
+    /**
+     * Reloads the dictionary in the background after the dictionary table has changed. The
+     * bootstrap is not ready until the new dictionary has replaced the old one. Must only be
+     * called from the main thread.
+     */
+    public void reloadDictionary() {
+        m_ready = false;
+        ++m_pendingLoads;
+        startLoad(new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException, ExecutionException {
+                SuggestionIndex index = KeyboardApp.loadSuggestionIndex();
+                ensureSignatures(index);
+                synchronized (Bootstrap.this) {
+                    m_nextTargetWords.clear();
+                }
+                KeyboardApp.setSuggestionIndex(index);
+                prepareTargetWords();
+                return null;
+            }
+        });
+    }
+
+    public synchronized List<KeyboardType> getNextKeyboardOrder() {
+        return m_nextKeyboardOrder;
+    }
+
+    /**
+     * Moves the next session on to the keyboard order after the completed session's, and draws
+     * its target words in the background.
+     */
+    public void onSessionCompleted(Session session) {
+        synchronized (this) {
+            m_nextKeyboardOrder = KeyboardType.nextKeyboardOrder(session.getKeyboardOrder());
+        }
+        m_executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                prepareTargetWords();
+            }
+        });
+    }
+
+    /**
+     * @return a target word drawn ahead of time, or a new random word once those run out
+     */
+    public String takeTargetWord() {
+        synchronized (this) {
+            if (!m_nextTargetWords.isEmpty()) {
+                return m_nextTargetWords.poll();
+            }
+        }
+        return KeyboardApp.getSuggestionIndex().getRandomWord();
+    }
+}
@@ -1,16 +1,17 @@
 package com.challenge.keyboardprototype;
 
 import android.app.ProgressDialog;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.util.Log;
 import com.challenge.keyboardprototype.db.Database;
+import com.challenge.keyboardprototype.dictionary.WordListReader;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Loads the database asynchronously while displaying a progress dialog.
@@ -29,39 +30,33 @@ public class DatabaseLoaderTask extends AsyncTask<Void, Integer, Void> {
 
     @Override
     protected Void doInBackground(Void... params) {
-        final Database db = KeyboardApp.getDatabase();
-        db.doInTransaction(new Runnable() {
-            @Override
-            public void run() {
-                BufferedReader reader = null;
-                try {
-                    reader = new BufferedReader(
-                            new InputStreamReader(m_context.getAssets().open("dictionary.csv")));
+        WordListReader reader = null;
+        try {
+            reader = new WordListReader(
+                    new InputStreamReader(m_context.getAssets().open("dictionary.csv")));
 
-                    // Read each line of the source word data and write it to the dictionary table.
-                    String line;
-                    int numWords = 0;
-                    while ((line = reader.readLine()) != null) {
-                        String[] tokens = line.split(",");
-                        db.insertWord(tokens[0].toLowerCase(), Integer.valueOf(tokens[1]));
-                        ++numWords;
-                        publishProgress(numWords);
-                    }
-                    Log.i(TAG, "Inserted " + numWords + " words into dictionary.");
+            long start = SystemClock.elapsedRealtime();
+            int numWords = KeyboardApp.getDatabase().importWords(reader, new Database.ImportProgressListener() {
+                @Override
+                public void onWordsImported(int count) {
+                    publishProgress(count);
+                }
+            });
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            KeyboardApp.getMetrics().getImportLatency().record(elapsed, TimeUnit.MILLISECONDS);
+            KeyboardApp.getMetrics().getWordsImported().add(numWords);
+            Log.i(TAG, "Inserted " + numWords + " words into dictionary in " + elapsed + "ms.");
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read dictionary file from assets.", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
                 } catch (IOException e) {
-                    throw new IllegalStateException("Unable to read dictionary file from assets.", e);
-                } finally {
-                    if (reader != null) {
-                        try {
-                            reader.close();
-                        } catch (IOException e) {
-                            Log.e(TAG, "Unable to close dictionary file from assets.", e);
-                        }
-                    }
-
+                    Log.e(TAG, "Unable to close dictionary file from assets.", e);
                 }
             }
-        });
+        }
 
         return null;
     }
@@ -94,6 +89,8 @@ public class DatabaseLoaderTask extends AsyncTask<Void, Integer, Void> {
 
     @Override
     protected void onPostExecute(Void aVoid) {
+        KeyboardApp.getBootstrap().reloadDictionary();
+
         m_progressDialog.setCancelable(true);
         m_progressDialog.setCanceledOnTouchOutside(true);
         m_progressDialog.getButton(ProgressDialog.BUTTON_NEUTRAL).setEnabled(true);
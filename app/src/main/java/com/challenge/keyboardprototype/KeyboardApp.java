@@ -2,7 +2,11 @@ package com.challenge.keyboardprototype;
 
 import android.app.Application;
 import android.util.Log;
+import com.challenge.keyboardprototype.db.AsyncDatabase;
 import com.challenge.keyboardprototype.db.Database;
+import com.challenge.keyboardprototype.db.SuggestionIndex;
+import com.challenge.keyboardprototype.db.WriteBehindJournal;
+import com.challenge.keyboardprototype.dictionary.WordSampler;
 import com.challenge.keyboardprototype.model.KeyboardType;
 
 import java.io.BufferedReader;
@@ -17,8 +21,15 @@ import java.io.InputStreamReader;
 public class KeyboardApp extends Application {
     private static final String TAG = "KB-App";
     private static final int DEFAULT_TRIALS_PER_KEYBOARD = 2;
+    private static final WordSampler.Mode TARGET_WORD_SAMPLING = WordSampler.Mode.UNIFORM;
 
     private static KeyboardApp m_instance;
+    private static KeyboardMetrics m_metrics;
+    private static Bootstrap m_bootstrap;
+    private static AsyncDatabase m_asyncDatabase;
+    private static WriteBehindJournal m_journal;
+    // Published by the bootstrap thread once fully loaded
+    private static volatile SuggestionIndex m_suggestionIndex;
 
     @Override
     public void onCreate() {
@@ -27,14 +38,71 @@ public class KeyboardApp extends Application {
         Log.i(TAG, "Initializing...");
 
         m_instance = this;
-
-        getDatabase();
+        m_metrics = new KeyboardMetrics();
+        // Only starts the database threads, the database itself is opened by the bootstrap
+        m_asyncDatabase = new AsyncDatabase(this);
+        m_journal = new WriteBehindJournal(m_asyncDatabase);
+        // Opens the database and loads the dictionary without holding up the first frame
+        m_bootstrap = new Bootstrap();
 
         Log.i(TAG, "Done initializing!");
     }
 
     public static Database getDatabase() { return Database.getInstance(m_instance); }
 
+    /**
+     * @return the database API for the main thread, which runs every query in the background
+     */
+    public static AsyncDatabase getAsyncDatabase() {
+        return m_asyncDatabase;
+    }
+
+    public static Bootstrap getBootstrap() {
+        return m_bootstrap;
+    }
+
+    public static KeyboardMetrics getMetrics() {
+        return m_metrics;
+    }
+
+    /**
+     * @return the journal through which session and trial updates are written
+     */
+    public static WriteBehindJournal getJournal() {
+        return m_journal;
+    }
+
+    /**
+     * @return the dictionary, which the {@link Bootstrap} loads before it is ready
+     */
+    public static SuggestionIndex getSuggestionIndex() {
+        SuggestionIndex index = m_suggestionIndex;
+        if (index == null) {
+            throw new IllegalStateException("The dictionary is not loaded yet.");
+        }
+        return index;
+    }
+
+    /**
+     * Loads the dictionary without publishing it. Must not be called from the main thread.
+     */
+    static SuggestionIndex loadSuggestionIndex() {
+        return SuggestionIndex.load(m_instance, getDatabase(), TrialActivity.MAX_SUGGESTED_WORDS,
+                TARGET_WORD_SAMPLING);
+    }
+
+    /**
+     * Replaces the dictionary with one that is fully loaded. Sessions created before this keep
+     * the old one.
+     */
+    static void setSuggestionIndex(SuggestionIndex index) {
+        SuggestionIndex oldIndex = m_suggestionIndex;
+        m_suggestionIndex = index;
+        if (oldIndex != null) {
+            oldIndex.invalidateCache();
+        }
+    }
+
     public static int getTrialsPerKeyboard() {
         // TODO: make trials per session configurable
         return DEFAULT_TRIALS_PER_KEYBOARD;
@@ -0,0 +1,174 @@
+package com.challenge.keyboardprototype;
+
+import android.os.Debug;
+import com.challenge.keyboardprototype.metrics.Counter;
+import com.challenge.keyboardprototype.metrics.LatencyHistogram;
+import com.challenge.keyboardprototype.metrics.MetricsRegistry;
+import com.challenge.keyboardprototype.model.KeyboardType;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The app's latency and resource metrics.
+ *
+ * Metrics are looked up once here so that they can be recorded from hot paths without
+ * allocating. Per keyboard metrics are tagged with the {@link KeyboardType}.
+ */
+public final class KeyboardMetrics {
+    private final MetricsRegistry m_registry = new MetricsRegistry();
+
+    private final Map<KeyboardType, Counter> m_keyPresses = new EnumMap<>(KeyboardType.class);
+    private final Map<KeyboardType, LatencyHistogram> m_suggestionLatency = new EnumMap<>(KeyboardType.class);
+    private final Map<KeyboardType, LatencyHistogram> m_suggestionQueryLatency = new EnumMap<>(KeyboardType.class);
+    private final Counter m_staleSuggestions = m_registry.counter("suggest.stale_results");
+    private final Counter m_suggestionCacheHits = m_registry.counter("suggest.cache_hits");
+    private final Counter m_suggestionCacheMisses = m_registry.counter("suggest.cache_misses");
+    private final LatencyHistogram m_randomWordLatency = m_registry.histogram("trial.random_word");
+    private final LatencyHistogram m_trialCreateLatency = m_registry.histogram("trial.create");
+    private final LatencyHistogram m_trialSaveLatency = m_registry.histogram("trial.save");
+    private final LatencyHistogram m_journalWriteLatency = m_registry.histogram("db.journal_write");
+    private final Counter m_keystrokesWritten = m_registry.counter("db.keystrokes_written");
+    private final LatencyHistogram m_importLatency = m_registry.histogram("db.import");
+    private final Counter m_wordsImported = m_registry.counter("db.words_imported");
+    private final LatencyHistogram m_exportLatency = m_registry.histogram("db.export");
+    private final AtomicLong m_peakHeapUsed = new AtomicLong();
+
+    KeyboardMetrics() {
+        for (KeyboardType type : KeyboardType.values()) {
+            m_keyPresses.put(type, m_registry.counter("suggest.key_presses", type));
+            m_suggestionLatency.put(type, m_registry.histogram("suggest.key_to_render", type));
+            m_suggestionQueryLatency.put(type, m_registry.histogram("db.suggestion_query", type));
+        }
+
+        m_registry.registerGauge("heap.used_bytes", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return sampleHeap();
+            }
+        });
+        m_registry.registerGauge("heap.peak_used_bytes", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return m_peakHeapUsed.get();
+            }
+        });
+        m_registry.registerGauge("heap.max_bytes", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return Runtime.getRuntime().maxMemory();
+            }
+        });
+        m_registry.registerGauge("heap.native_allocated_bytes", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return Debug.getNativeHeapAllocatedSize();
+            }
+        });
+        m_registry.registerGauge("db.file_bytes", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return KeyboardApp.getDatabase().getFileSize();
+            }
+        });
+    }
+
+    public MetricsRegistry getRegistry() {
+        return m_registry;
+    }
+
+    public Counter getKeyPresses(KeyboardType keyboardType) {
+        return m_keyPresses.get(keyboardType);
+    }
+
+    /**
+     * @return time from a key press until its suggestions have been shown
+     */
+    public LatencyHistogram getSuggestionLatency(KeyboardType keyboardType) {
+        return m_suggestionLatency.get(keyboardType);
+    }
+
+    /**
+     * @return time taken by suggestion queries against the dictionary tables
+     */
+    public LatencyHistogram getSuggestionQueryLatency(KeyboardType keyboardType) {
+        return m_suggestionQueryLatency.get(keyboardType);
+    }
+
+    /**
+     * @return suggestions computed but not shown because a newer key press overtook them
+     */
+    public Counter getStaleSuggestions() {
+        return m_staleSuggestions;
+    }
+
+    public Counter getSuggestionCacheHits() {
+        return m_suggestionCacheHits;
+    }
+
+    public Counter getSuggestionCacheMisses() {
+        return m_suggestionCacheMisses;
+    }
+
+    public LatencyHistogram getRandomWordLatency() {
+        return m_randomWordLatency;
+    }
+
+    public LatencyHistogram getTrialCreateLatency() {
+        return m_trialCreateLatency;
+    }
+
+    public LatencyHistogram getTrialSaveLatency() {
+        return m_trialSaveLatency;
+    }
+
+    public LatencyHistogram getJournalWriteLatency() {
+        return m_journalWriteLatency;
+    }
+
+    public Counter getKeystrokesWritten() {
+        return m_keystrokesWritten;
+    }
+
+    public LatencyHistogram getImportLatency() {
+        return m_importLatency;
+    }
+
+    public Counter getWordsImported() {
+        return m_wordsImported;
+    }
+
+    public LatencyHistogram getExportLatency() {
+        return m_exportLatency;
+    }
+
+    /**
+     * Measures the heap in use and updates the peak.
+     *
+     * @return the number of bytes in use
+     */
+    public long sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        long peak = m_peakHeapUsed.get();
+        while (used > peak && !m_peakHeapUsed.compareAndSet(peak, used)) {
+            peak = m_peakHeapUsed.get();
+        }
+        return used;
+    }
+
+    public void writeTo(File file) throws IOException {
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try {
+            m_registry.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+}
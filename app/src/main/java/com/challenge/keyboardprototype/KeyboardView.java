@@ -0,0 +1,218 @@
+package com.challenge.keyboardprototype;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import com.challenge.keyboardprototype.model.KeyboardType;
+
+/**
+ * Draws the keys of a {@link KeyboardType} and reports where they are pressed.
+ *
+ * Every keyboard type is an evenly spaced grid of cells, so the cell under a touch is found by
+ * dividing its position by the cell size, and the key in that cell is a lookup in the keyboard
+ * type's table. Switching keyboard types only swaps that table, and drawing allocates nothing.
+ *
+ * A key is pressed when the touch is released over the cell it went down on, and the listener
+ * receives the point where it went down, in pixels from the top left of this view.
+ */
+public class KeyboardView extends View {
+    private final Paint m_keyPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint m_pressedKeyPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint m_textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF m_keyRect = new RectF();
+    private final float m_keyGap;
+    private final float m_keyCornerRadius;
+    private final int m_keyMinHeight;
+    private final int m_keyVerticalPadding;
+    private final float m_lineHeight;
+    // From the top of a line to its baseline
+    private final float m_baselineOffset;
+
+    private KeyboardType m_keyboardType;
+    private QwertyKeyboardFragment.OnKeyboardInteractionListener m_listener;
+    private int m_rowHeight;
+    private float m_columnWidth;
+
+    // The key the current touch went down on, and where
+    private int m_pressedKey = KeyboardType.NO_KEY;
+    private float m_pressX;
+    private float m_pressY;
+
+    public KeyboardView(Context context) {
+        this(context, null);
+    }
+
+    public KeyboardView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        Resources resources = context.getResources();
+        m_keyGap = resources.getDimension(R.dimen.key_gap);
+        m_keyCornerRadius = resources.getDimension(R.dimen.key_corner_radius);
+        m_keyMinHeight = resources.getDimensionPixelSize(R.dimen.key_min_height);
+        m_keyVerticalPadding = resources.getDimensionPixelSize(R.dimen.key_vertical_padding);
+
+        m_keyPaint.setColor(context.getColor(R.color.colorKey));
+        m_pressedKeyPaint.setColor(context.getColor(R.color.colorKeyPressed));
+        m_textPaint.setColor(context.getColor(R.color.colorKeyText));
+        m_textPaint.setTextSize(resources.getDimension(R.dimen.key_text_size));
+        m_textPaint.setTextAlign(Paint.Align.CENTER);
+
+        Paint.FontMetrics metrics = m_textPaint.getFontMetrics();
+        m_lineHeight = m_textPaint.getFontSpacing();
+        m_baselineOffset = (m_lineHeight - (metrics.descent - metrics.ascent)) / 2 - metrics.ascent;
+    }
+
+    public void setOnKeyboardInteractionListener(QwertyKeyboardFragment.OnKeyboardInteractionListener listener) {
+        m_listener = listener;
+    }
+
+    public KeyboardType getKeyboardType() {
+        return m_keyboardType;
+    }
+
+    public void setKeyboardType(KeyboardType keyboardType) {
+        if (keyboardType == m_keyboardType) {
+            return;
+        }
+
+        final int oldHeight = getDesiredHeight();
+        m_keyboardType = keyboardType;
+        m_pressedKey = KeyboardType.NO_KEY;
+        m_rowHeight = getRowHeight(keyboardType);
+        updateColumnWidth();
+        if (getDesiredHeight() != oldHeight) {
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    private int getRowHeight(KeyboardType keyboardType) {
+        final int labelHeight = (int) Math.ceil(keyboardType.getMaxLabelLines() * m_lineHeight);
+        return Math.max(m_keyMinHeight, labelHeight + 2 * m_keyVerticalPadding);
+    }
+
+    private int getDesiredHeight() {
+        if (m_keyboardType == null) {
+            return 0;
+        }
+        return m_keyboardType.getRowCount() * m_rowHeight + getPaddingTop() + getPaddingBottom();
+    }
+
+    private void updateColumnWidth() {
+        if (m_keyboardType != null) {
+            final int width = getWidth() - getPaddingLeft() - getPaddingRight();
+            m_columnWidth = Math.max(0, width) / (float) m_keyboardType.getColumnCount();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                resolveSize(getDesiredHeight(), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateColumnWidth();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (m_keyboardType == null) {
+            return;
+        }
+
+        final float halfGap = m_keyGap / 2;
+        for (int row = 0; row < m_keyboardType.getRowCount(); ++row) {
+            final float top = getPaddingTop() + row * m_rowHeight;
+            for (int column = 0; column < m_keyboardType.getColumnCount(); ++column) {
+                final int key = m_keyboardType.getKeyAt(row, column);
+                if (key == KeyboardType.NO_KEY) {
+                    continue;
+                }
+
+                final float left = getPaddingLeft() + column * m_columnWidth;
+                m_keyRect.set(left + halfGap, top + halfGap, left + m_columnWidth - halfGap,
+                        top + m_rowHeight - halfGap);
+                canvas.drawRoundRect(m_keyRect, m_keyCornerRadius, m_keyCornerRadius,
+                        key == m_pressedKey ? m_pressedKeyPaint : m_keyPaint);
+
+                final String[] lines = m_keyboardType.getKeyLabelLines(key);
+                float lineTop = m_keyRect.centerY() - lines.length * m_lineHeight / 2;
+                for (String line : lines) {
+                    canvas.drawText(line, m_keyRect.centerX(), lineTop + m_baselineOffset, m_textPaint);
+                    lineTop += m_lineHeight;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the key in the cell under the given point, or {@link KeyboardType#NO_KEY}
+     */
+    private int keyAt(float x, float y) {
+        if (m_keyboardType == null || m_columnWidth <= 0) {
+            return KeyboardType.NO_KEY;
+        }
+
+        final float gridX = x - getPaddingLeft();
+        final float gridY = y - getPaddingTop();
+        if (gridX < 0 || gridY < 0) {
+            return KeyboardType.NO_KEY;
+        }
+        final int row = (int) (gridY / m_rowHeight);
+        final int column = (int) (gridX / m_columnWidth);
+        if (row >= m_keyboardType.getRowCount() || column >= m_keyboardType.getColumnCount()) {
+            return KeyboardType.NO_KEY;
+        }
+        return m_keyboardType.getKeyAt(row, column);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                m_pressX = event.getX();
+                m_pressY = event.getY();
+                setPressedKey(keyAt(m_pressX, m_pressY));
+                return true;
+
+            case MotionEvent.ACTION_MOVE:
+                // Sliding off a key abandons it, as with a button
+                if (m_pressedKey != KeyboardType.NO_KEY && keyAt(event.getX(), event.getY()) != m_pressedKey) {
+                    setPressedKey(KeyboardType.NO_KEY);
+                }
+                return true;
+
+            case MotionEvent.ACTION_UP:
+                final int key = m_pressedKey;
+                setPressedKey(KeyboardType.NO_KEY);
+                if (key != KeyboardType.NO_KEY) {
+                    performClick();
+                    if (m_listener != null) {
+                        m_listener.onKeyPressed(key, m_pressX, m_pressY);
+                    }
+                }
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                setPressedKey(KeyboardType.NO_KEY);
+                return true;
+
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    private void setPressedKey(int key) {
+        if (key != m_pressedKey) {
+            m_pressedKey = key;
+            invalidate();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.challenge.keyboardprototype;
 import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.os.AsyncTask;
 import android.os.Environment;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
@@ -19,20 +20,14 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
-import com.challenge.keyboardprototype.db.Database;
-import com.challenge.keyboardprototype.model.Session;
-import com.challenge.keyboardprototype.model.Trial;
-import com.opencsv.CSVWriter;
+import com.challenge.keyboardprototype.db.AsyncDatabase;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "KB-Main";
-    private static final String EXCEL_TS_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
 
     private EditText    m_participantText;
     private Button      m_startButton;
@@ -58,7 +53,7 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void afterTextChanged(Editable editable) {
-                m_startButton.setEnabled(editable.length() > 0);
+                updateStartButton();
             }
         });
         m_startButton.setOnClickListener(new View.OnClickListener() {
@@ -67,6 +62,16 @@ public class MainActivity extends AppCompatActivity {
                 startTrialsClicked();
             }
         });
+        KeyboardApp.getBootstrap().whenReady(new Runnable() {
+            @Override
+            public void run() {
+                updateStartButton();
+            }
+        });
+    }
+
+    private void updateStartButton() {
+        m_startButton.setEnabled(m_participantText.length() > 0 && KeyboardApp.getBootstrap().isReady());
     }
 
     private void startTrialsClicked() {
@@ -87,10 +92,15 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        if (KeyboardApp.getDatabase().getWordCount() == 0) {
-            DatabaseLoaderTask loaderTask = new DatabaseLoaderTask(this);
-            loaderTask.execute();
-        }
+        KeyboardApp.getBootstrap().whenReady(new Runnable() {
+            @Override
+            public void run() {
+                if (!isDestroyed() && KeyboardApp.getBootstrap().claimDictionaryImport()) {
+                    DatabaseLoaderTask loaderTask = new DatabaseLoaderTask(MainActivity.this);
+                    loaderTask.execute();
+                }
+            }
+        });
     }
 
     @Override
@@ -99,6 +109,9 @@ public class MainActivity extends AppCompatActivity {
             case R.id.main_menu_save_data:
                 saveTrialDataSelected();
                 return true;
+            case R.id.main_menu_save_metrics:
+                saveMetricsSelected();
+                return true;
             case R.id.main_menu_clear_data:
                 clearTrialDataSelected();
                 return true;
@@ -108,82 +121,50 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void saveTrialDataSelected() {
-        final File outputFile = getSaveFile();
+        final File outputFile = getSaveFile(REQUEST_EXTERNAL_STORAGE, "KeyboardTrialData_", ".csv");
         if (outputFile == null) {
             return;
         }
 
+        new TrialExportTask(this, outputFile).execute();
+    }
 
-        CSVWriter out = null;
-        try {
-            out = new CSVWriter(new FileWriter(outputFile));
-            writeTrialDataHeader(out);
-
-            Database db = KeyboardApp.getDatabase();
-            List<Session> sessions = db.getAllSessions();
-            for (Session session : sessions) {
-                List<Trial> trials = KeyboardApp.getDatabase().getTrialsForSession(session.getSessionId());
-
-                for (Trial trial : trials) {
-                    writeTrialDataRow(session, trial, out);
-                }
-            }
+    private void saveMetricsSelected() {
+        final File outputFile = getSaveFile(REQUEST_EXTERNAL_STORAGE_METRICS, "KeyboardMetrics_", ".txt");
+        if (outputFile == null) {
+            return;
+        }
 
-            Toast toast = Toast.makeText(this, getString(R.string.main_save_data_complete_prefix) + outputFile.getName(), Toast.LENGTH_LONG);
-            toast.show();
-        } catch (IOException e) {
-            Log.e(TAG, "Failed to save trial data.", e);
-            Toast toast = Toast.makeText(this, R.string.main_save_failed, Toast.LENGTH_SHORT);
-            toast.show();
-        } finally {
-            if (out != null) {
+        new AsyncTask<Void, Void, Boolean>() {
+            @Override
+            protected Boolean doInBackground(Void... params) {
                 try {
-                    out.close();
+                    KeyboardApp.getMetrics().writeTo(outputFile);
+                    return true;
                 } catch (IOException e) {
-                    Log.e(TAG, "Failed to close trial data file.", e);
+                    Log.e(TAG, "Failed to save metrics.", e);
+                    return false;
                 }
             }
-        }
-    }
 
-    private void writeTrialDataHeader(CSVWriter out) {
-        out.writeNext(new String[] {
-                // Session fields
-                "session_id",
-                "participant_id",
-                "session_start",
-                "status,",
-                // Trial fields
-                "trial_id",
-                "keyboard_type",
-                "target_word",
-                "entered_word",
-                "entry_method",
-                "trial_start",
-                "trial_end",
-                "duration_ms",
-        });
-    }
-
-    private void writeTrialDataRow(Session session, Trial trial, CSVWriter out) {
-        out.writeNext(new String[] {
-                Long.toString(session.getSessionId()),
-                session.getParticipantId(),
-                session.hasStarted() ? DateFormat.format(EXCEL_TS_FORMAT, session.getStartTimestamp()).toString() : null,
-                session.getStatus().toString(),
-                Long.toString(trial.getTrialId()),
-                trial.getKeyboardType().toString(),
-                trial.getTargetWord(),
-                trial.getEnteredWord(),
-                trial.hasEnded() ? trial.getEntryMethod().toString() : null,
-                trial.hasEnded() ? DateFormat.format(EXCEL_TS_FORMAT, trial.getStartTimestamp()).toString() : null,
-                trial.hasEnded() ? DateFormat.format(EXCEL_TS_FORMAT, trial.getEndTimestamp()).toString() : null,
-                trial.hasEnded() ? Integer.toString(trial.getDurationMs()) : null,
-        });
+            @Override
+            protected void onPostExecute(Boolean success) {
+                Toast toast;
+                if (success) {
+                    toast = Toast.makeText(MainActivity.this,
+                            getString(R.string.main_save_data_complete_prefix) + outputFile.getName(),
+                            Toast.LENGTH_LONG);
+                } else {
+                    toast = Toast.makeText(MainActivity.this, R.string.main_save_failed, Toast.LENGTH_SHORT);
+                }
+                toast.show();
+            }
+        }.execute();
     }
 
     // Storage Permissions
     private static final int REQUEST_EXTERNAL_STORAGE = 1;
+    private static final int REQUEST_EXTERNAL_STORAGE_METRICS = 2;
     private static final String[] PERMISSIONS_STORAGE = {
             Manifest.permission.READ_EXTERNAL_STORAGE,
             Manifest.permission.WRITE_EXTERNAL_STORAGE
@@ -194,7 +175,7 @@ public class MainActivity extends AppCompatActivity {
      *
      * If the app does not has permission then the user will be prompted to grant permissions
      */
-    private boolean verifyStoragePermissions() {
+    private boolean verifyStoragePermissions(int requestCode) {
         // Check if we have write permission
         int permission = ActivityCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE);
 
@@ -203,7 +184,7 @@ public class MainActivity extends AppCompatActivity {
             ActivityCompat.requestPermissions(
                     this,
                     PERMISSIONS_STORAGE,
-                    REQUEST_EXTERNAL_STORAGE
+                    requestCode
             );
             return false;
         }
@@ -215,10 +196,14 @@ public class MainActivity extends AppCompatActivity {
     public void onRequestPermissionsResult(int requestCode,
                                            @NonNull String permissions[],
                                            @NonNull int[] grantResults) {
-        if (requestCode == REQUEST_EXTERNAL_STORAGE) {
+        if (requestCode == REQUEST_EXTERNAL_STORAGE || requestCode == REQUEST_EXTERNAL_STORAGE_METRICS) {
             // If request is cancelled, the result arrays are empty.
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-                saveTrialDataSelected();
+                if (requestCode == REQUEST_EXTERNAL_STORAGE) {
+                    saveTrialDataSelected();
+                } else {
+                    saveMetricsSelected();
+                }
             } else {
                 Toast toast = Toast.makeText(this, R.string.main_save_data_permission_denied, Toast.LENGTH_SHORT);
                 toast.show();
@@ -228,8 +213,8 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private File getSaveFile() {
-        if (!verifyStoragePermissions()) {
+    private File getSaveFile(int requestCode, String prefix, String extension) {
+        if (!verifyStoragePermissions(requestCode)) {
             return null;
         }
 
@@ -240,9 +225,9 @@ public class MainActivity extends AppCompatActivity {
             return null;
         }
 
-        String fileName = "KeyboardTrialData_" +
+        String fileName = prefix +
                 DateFormat.format("yyyyMMdd-HHmmss", System.currentTimeMillis()) +
-                ".csv";
+                extension;
         File directory = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
 
         if (!directory.exists() && !directory.mkdir()) {
@@ -257,20 +242,19 @@ public class MainActivity extends AppCompatActivity {
 
     private void clearTrialDataSelected() {
         // TODO: This is dangerous so pop a confirmation dialog.
-        final Database db = KeyboardApp.getDatabase();
-        db.doInTransaction(new Runnable() {
+        KeyboardApp.getAsyncDatabase().clearTrialData(new AsyncDatabase.Callback<int[]>() {
             @Override
-            public void run() {
-                int numSessions = db.deleteAllSessions();
-                int numTrials = db.deleteAllTrials();
-
-                Log.i(TAG, "Cleared data: {sessions=" + numSessions + ", trials=" + numTrials + "}");
+            public void onResult(int[] counts) {
+                Log.i(TAG, "Cleared data: {sessions=" + counts[0] + ", trials=" + counts[1] +
+                        ", keystrokes=" + counts[2] + "}");
+                if (isDestroyed()) {
+                    return;
+                }
                 Toast toast = Toast.makeText(MainActivity.this,
                         R.string.main_data_cleared_toast,
                         Toast.LENGTH_SHORT);
                 toast.show();
             }
         });
-
     }
 }
@@ -3,11 +3,10 @@ package com.challenge.keyboardprototype;
 import android.content.Context;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
-import android.support.annotation.Nullable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.Button;
+import com.challenge.keyboardprototype.dictionary.KeyLayout;
 import com.challenge.keyboardprototype.model.KeyboardType;
 
 /**
@@ -18,22 +17,18 @@ import com.challenge.keyboardprototype.model.KeyboardType;
  *
  * Use the {@link QwertyKeyboardFragment#newInstance} factory method to
  * create an instance of this fragment.
+ *
+ * Every {@link KeyboardType} is drawn by the same {@link KeyboardView}, and
+ * {@link #setKeyboardType} only changes which one it draws. A key press reaches the listener as a
+ * plain index along with the point where the key was touched.
  */
 public class QwertyKeyboardFragment extends Fragment {
 
-    private static final String QWERTY_KEY_TAG = "qwerty_key";
     private static final String KEYBOARD_TYPE_PARAM = "keyboardType";
 
     private OnKeyboardInteractionListener m_listener;
-
-    private final Button.OnClickListener m_keyPressListener = new Button.OnClickListener() {
-        @Override
-        public void onClick(View view) {
-            Button button = (Button) view;
-            keyPressed(button.getText().toString().replace("\n",""));
-        }
-    };
-
+    private KeyboardType m_keyboardType;
+    private KeyboardView m_keyboardView;
 
     /**
      * This interface must be implemented by activities that contain this
@@ -49,9 +44,11 @@ public class QwertyKeyboardFragment extends Fragment {
         /**
          * Called when a key is pressed on the keyboard
          *
-         * @param keyChars string of letters on the key that was pressed
+         * @param keyIndex index of the key in the keyboard type's {@link KeyLayout}
+         * @param x where the key was touched, in pixels from the left of the keyboard
+         * @param y where the key was touched, in pixels from the top of the keyboard
          */
-        void onKeyPressed(CharSequence keyChars);
+        void onKeyPressed(int keyIndex, float x, float y);
     }
 
     public QwertyKeyboardFragment() {
@@ -59,15 +56,27 @@ public class QwertyKeyboardFragment extends Fragment {
     }
 
     public KeyboardType getKeyboardType() {
-        return KeyboardType.valueOf(getArguments().getString(KEYBOARD_TYPE_PARAM));
+        if (m_keyboardType == null) {
+            m_keyboardType = KeyboardType.valueOf(getArguments().getString(KEYBOARD_TYPE_PARAM));
+        }
+        return m_keyboardType;
+    }
+
+    /**
+     * Shows the keyboard of the given type.
+     */
+    public void setKeyboardType(KeyboardType keyboardType) {
+        m_keyboardType = keyboardType;
+        getArguments().putString(KEYBOARD_TYPE_PARAM, keyboardType.toString());
+        if (m_keyboardView != null) {
+            m_keyboardView.setKeyboardType(keyboardType);
+        }
     }
 
     /**
      * @return A new instance of fragment QwertyKeyboardFragment.
      */
     public static QwertyKeyboardFragment newInstance(KeyboardType keyboardType) {
-        // This factory method could eventually return radically different keyboard
-        // fragments, but for now just use the same class for all of them
         QwertyKeyboardFragment fragment = new QwertyKeyboardFragment();
 
         Bundle args = new Bundle();
@@ -80,42 +89,23 @@ public class QwertyKeyboardFragment extends Fragment {
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
-        // Inflate the layout for this fragment
-        return inflater.inflate(getKeyboardType().getLayoutResource(), container, false);
-    }
-
-    @Override
-    public void onViewCreated(View view, @Nullable Bundle savedInstanceState) {
-        super.onViewCreated(view, savedInstanceState);
-
-        activateAllQwertyKeys((ViewGroup) view);
-    }
-
-    private void activateAllQwertyKeys(ViewGroup root) {
-        final int childCount = root.getChildCount();
-        for (int i = 0; i < childCount; i++) {
-            View child = root.getChildAt(i);
-            if (child instanceof ViewGroup) {
-                activateAllQwertyKeys((ViewGroup)child);
-            }
-
-            Object tagObj = child.getTag();
-            if (tagObj != null && tagObj.equals(QWERTY_KEY_TAG)) {
-                if (child instanceof Button) {
-                    child.setOnClickListener(m_keyPressListener);
-                } else {
-                    throw new RuntimeException(
-                            "All views with '" + QWERTY_KEY_TAG + "' tag must be buttons.");
+        m_keyboardView = new KeyboardView(inflater.getContext());
+        m_keyboardView.setKeyboardType(getKeyboardType());
+        m_keyboardView.setOnKeyboardInteractionListener(new OnKeyboardInteractionListener() {
+            @Override
+            public void onKeyPressed(int keyIndex, float x, float y) {
+                if (m_listener != null) {
+                    m_listener.onKeyPressed(keyIndex, x, y);
                 }
             }
-
-        }
+        });
+        return m_keyboardView;
     }
 
-    private void keyPressed(CharSequence keyChars) {
-        if (m_listener != null) {
-            m_listener.onKeyPressed(keyChars);
-        }
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        m_keyboardView = null;
     }
 
     @Override
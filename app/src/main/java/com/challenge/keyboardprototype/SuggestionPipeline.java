@@ -0,0 +1,173 @@
+package com.challenge.keyboardprototype;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import com.challenge.keyboardprototype.db.WriteBehindJournal;
+import com.challenge.keyboardprototype.dictionary.SuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.SuggestionSession;
+import com.challenge.keyboardprototype.model.KeyboardType;
+import com.challenge.keyboardprototype.model.Trial;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Looks up suggested words on a dedicated worker thread.
+ *
+ * Every key press and reset is tagged with a sequence number. The worker applies every key to
+ * its {@link SuggestionSession}, but only computes suggestions when no newer request is waiting, and
+ * results that were overtaken by a newer request are dropped before reaching the listener.
+ *
+ * Every key press is also recorded with {@link WriteBehindJournal#recordKeystroke}. The press is
+ * timed on the main thread into a preallocated slot for its sequence number, along with its touch
+ * point, and recorded by the worker once the number of matching words is known, so nothing is
+ * allocated per key until the suggestions themselves are built.
+ *
+ * All public methods must be called from the main thread.
+ */
+public class SuggestionPipeline implements QwertyKeyboardFragment.OnKeyboardInteractionListener {
+    private static final String THREAD_NAME = "KB-Suggest";
+
+    private static final int MSG_RESET = 1;
+    private static final int MSG_KEY = 2;
+    private static final int MSG_RESULT = 3;
+
+    // Must exceed the number of requests that can be waiting for the worker at once
+    private static final int PRESS_TIME_SLOTS = 256;
+
+    /**
+     * Receives suggestions on the main thread.
+     */
+    public interface Listener {
+        /**
+         * @param keyCount number of keys pressed when the suggestions were computed
+         * @param suggestedWords suggestions ordered with the best match last
+         */
+        void onSuggestionsReady(int keyCount, List<String> suggestedWords);
+    }
+
+    private final int m_numWords;
+    private final AtomicInteger m_latestSequence = new AtomicInteger();
+    private final long[] m_pressTimes = new long[PRESS_TIME_SLOTS];
+    private final float[] m_pressXs = new float[PRESS_TIME_SLOTS];
+    private final float[] m_pressYs = new float[PRESS_TIME_SLOTS];
+    private final WriteBehindJournal m_journal;
+    private final KeyboardMetrics m_metrics;
+    private final SuggestionEngine m_engine;
+    private final HandlerThread m_thread;
+    private final Handler m_workerHandler;
+    private final Handler m_mainHandler;
+
+    // Main thread state
+    private Listener m_listener;
+    private KeyboardType m_keyboardType;
+
+    // Worker thread state
+    private SuggestionSession m_session;
+    private Trial m_trial;
+
+    public SuggestionPipeline(int numWords, Listener listener) {
+        m_numWords = numWords;
+        m_listener = listener;
+        m_journal = KeyboardApp.getJournal();
+        m_metrics = KeyboardApp.getMetrics();
+        m_engine = KeyboardApp.getSuggestionIndex().getEngine();
+
+        m_thread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_DISPLAY);
+        m_thread.start();
+        m_workerHandler = new Handler(m_thread.getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                return handleWorkerMessage(msg);
+            }
+        });
+        m_mainHandler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                return handleMainMessage(msg);
+            }
+        });
+    }
+
+    /**
+     * Starts a new word for the given trial, discarding any pending suggestions.
+     */
+    public void reset(Trial trial) {
+        m_keyboardType = trial.getKeyboardType();
+        int sequence = m_latestSequence.incrementAndGet();
+        m_workerHandler.obtainMessage(MSG_RESET, sequence, 0, trial).sendToTarget();
+    }
+
+    @Override
+    public void onKeyPressed(int keyIndex, float x, float y) {
+        if (m_keyboardType == null) {
+            throw new IllegalStateException("reset() must be called before keys are pressed.");
+        }
+
+        long pressTime = SystemClock.elapsedRealtimeNanos();
+        int sequence = m_latestSequence.incrementAndGet();
+        final int slot = sequence & (PRESS_TIME_SLOTS - 1);
+        m_pressTimes[slot] = pressTime;
+        m_pressXs[slot] = x;
+        m_pressYs[slot] = y;
+        m_metrics.getKeyPresses(m_keyboardType).increment();
+        m_workerHandler.obtainMessage(MSG_KEY, sequence, keyIndex).sendToTarget();
+    }
+
+    /**
+     * Stops the worker. No more suggestions are delivered after this returns.
+     */
+    public void quit() {
+        m_listener = null;
+        m_latestSequence.incrementAndGet();
+        m_thread.quitSafely();
+    }
+
+    private boolean handleWorkerMessage(Message msg) {
+        switch (msg.what) {
+            case MSG_RESET:
+                m_trial = (Trial) msg.obj;
+                m_session = m_engine.newSession(m_trial.getKeyboardType().getKeyLayout());
+                return true;
+            case MSG_KEY:
+                int numCandidates = m_session.pressKey(msg.arg2);
+                final int slot = msg.arg1 & (PRESS_TIME_SLOTS - 1);
+                m_journal.recordKeystroke(m_trial.getTrialId(), m_pressTimes[slot], m_trial.getKeyboardType(),
+                        msg.arg2, m_pressXs[slot], m_pressYs[slot], m_session.getKeyCount(), numCandidates);
+
+                // Coalesce bursts of key presses by only computing the latest prefix
+                if (msg.arg1 != m_latestSequence.get()) {
+                    return true;
+                }
+
+                List<String> words = m_session.getSuggestedWords(m_numWords);
+                m_mainHandler.obtainMessage(MSG_RESULT, msg.arg1, m_session.getKeyCount(), words)
+                        .sendToTarget();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean handleMainMessage(Message msg) {
+        if (msg.what != MSG_RESULT) {
+            return false;
+        }
+
+        if (m_listener != null && msg.arg1 == m_latestSequence.get()) {
+            m_listener.onSuggestionsReady(msg.arg2, (List<String>) msg.obj);
+            m_metrics.getSuggestionLatency(m_keyboardType).record(
+                    SystemClock.elapsedRealtimeNanos() - m_pressTimes[msg.arg1 & (PRESS_TIME_SLOTS - 1)],
+                    TimeUnit.NANOSECONDS);
+        } else {
+            m_metrics.getStaleSuggestions().increment();
+        }
+        return true;
+    }
+}
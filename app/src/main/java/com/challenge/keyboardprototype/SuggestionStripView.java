@@ -0,0 +1,157 @@
+package com.challenge.keyboardprototype;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import java.util.List;
+
+/**
+ * Scrollable column of alternate suggestions, with the best match at the bottom next to the
+ * autocomplete word.
+ *
+ * Item views are inflated the first time they are needed and then kept, and an update only
+ * touches the items whose word changed. The item height is measured once, so resizing the strip
+ * to show up to {@link #setMaxVisibleItems} items is arithmetic, and its layout params are only
+ * set again when the height actually changes.
+ */
+public class SuggestionStripView extends ScrollView {
+    private static final int DEFAULT_MAX_VISIBLE_ITEMS = 3;
+
+    /**
+     * Receives clicks on suggestions.
+     */
+    public interface OnSuggestionClickListener {
+        void onSuggestionClicked(String word);
+    }
+
+    private final LinearLayout m_items;
+    private final LayoutInflater m_inflater;
+    private final int m_dividerHeight;
+    private int m_maxVisibleItems = DEFAULT_MAX_VISIBLE_ITEMS;
+    private int m_itemHeight = -1;
+    private OnSuggestionClickListener m_listener;
+
+    // m_words[i] is shown by the ith item view, for the first m_wordCount items
+    private String[] m_words = new String[0];
+    private int m_wordCount;
+
+    private final View.OnClickListener m_itemClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            int index = (Integer) view.getTag();
+            if (m_listener != null && index < m_wordCount) {
+                m_listener.onSuggestionClicked(m_words[index]);
+            }
+        }
+    };
+
+    private final Runnable m_scrollToBottom = new Runnable() {
+        @Override
+        public void run() {
+            fullScroll(View.FOCUS_DOWN);
+        }
+    };
+
+    public SuggestionStripView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        m_inflater = LayoutInflater.from(context);
+
+        m_items = new LinearLayout(context);
+        m_items.setOrientation(LinearLayout.VERTICAL);
+        TypedArray attributes = context.obtainStyledAttributes(new int[] { android.R.attr.listDivider });
+        Drawable divider = attributes.getDrawable(0);
+        attributes.recycle();
+        if (divider != null) {
+            m_items.setDividerDrawable(divider);
+            m_items.setShowDividers(LinearLayout.SHOW_DIVIDER_MIDDLE);
+        }
+        m_dividerHeight = divider == null ? 0 : Math.max(0, divider.getIntrinsicHeight());
+        addView(m_items, new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+    }
+
+    public void setOnSuggestionClickListener(OnSuggestionClickListener listener) {
+        m_listener = listener;
+    }
+
+    public void setMaxVisibleItems(int maxVisibleItems) {
+        m_maxVisibleItems = maxVisibleItems;
+    }
+
+    /**
+     * Shows the given words in order, so the last word is at the bottom.
+     */
+    public void setSuggestions(List<String> words) {
+        final int count = words.size();
+        ensureCapacity(count);
+
+        for (int i = 0; i < count; ++i) {
+            final String word = words.get(i);
+            if (i >= m_wordCount || !word.equals(m_words[i])) {
+                m_words[i] = word;
+                ((TextView) m_items.getChildAt(i)).setText(word);
+            }
+            if (i >= m_wordCount) {
+                m_items.getChildAt(i).setVisibility(View.VISIBLE);
+            }
+        }
+        for (int i = count; i < m_wordCount; ++i) {
+            m_words[i] = null;
+            m_items.getChildAt(i).setVisibility(View.GONE);
+        }
+        m_wordCount = count;
+
+        updateHeight();
+        if (count > 0) {
+            removeCallbacks(m_scrollToBottom);
+            post(m_scrollToBottom);
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= m_words.length) {
+            return;
+        }
+
+        String[] words = new String[count];
+        System.arraycopy(m_words, 0, words, 0, m_wordCount);
+        m_words = words;
+        for (int i = m_items.getChildCount(); i < count; ++i) {
+            View item = m_inflater.inflate(android.R.layout.simple_list_item_1, m_items, false);
+            item.setTag(i);
+            item.setOnClickListener(m_itemClickListener);
+            item.setVisibility(View.GONE);
+            m_items.addView(item);
+        }
+    }
+
+    private void updateHeight() {
+        final int numItemsVisible = Math.min(m_maxVisibleItems, m_wordCount);
+        setVisibility(numItemsVisible == 0 ? View.GONE : View.VISIBLE);
+        if (numItemsVisible == 0) {
+            return;
+        }
+
+        if (m_itemHeight < 0) {
+            // Every item uses the same single line layout, so one measurement serves for all
+            View item = m_items.getChildAt(0);
+            item.measure(MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED),
+                    MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+            m_itemHeight = item.getMeasuredHeight();
+        }
+
+        final int height = numItemsVisible * m_itemHeight + (numItemsVisible - 1) * m_dividerHeight;
+        ViewGroup.LayoutParams params = getLayoutParams();
+        if (params.height != height) {
+            params.height = height;
+            setLayoutParams(params);
+        }
+    }
+}
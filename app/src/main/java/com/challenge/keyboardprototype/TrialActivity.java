@@ -1,48 +1,52 @@
 package com.challenge.keyboardprototype;
 
 import android.content.Intent;
-import android.content.res.Resources;
 import android.support.v4.app.FragmentManager;
 import android.support.v4.app.FragmentTransaction;
 import android.support.v7.app.AppCompatActivity;
+import android.os.AsyncTask;
 import android.os.Bundle;
-import android.text.Html;
+import android.text.Editable;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
 import android.util.Log;
 import android.view.View;
-import android.view.ViewGroup;
 import android.widget.*;
+import com.challenge.keyboardprototype.db.AsyncDatabase;
 import com.challenge.keyboardprototype.model.*;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 public class TrialActivity extends AppCompatActivity
-        implements QwertyKeyboardFragment.OnKeyboardInteractionListener
+        implements QwertyKeyboardFragment.OnKeyboardInteractionListener, SuggestionPipeline.Listener
 {
     private static final String TAG = "KB-Trial";
 
     static final String PARTICIPANT_ID_PARAM =
             AppCompatActivity.class.getCanonicalName() + ".participantId";
 
-    private static final List<KeyboardType> DEFAULT_KEYBOARD_ORDER =
-            Arrays.asList(KeyboardType.values());
     private static final String KEYBOARD_FRAGMENT_TAG = "keyboardFragment";
-    private static final int MAX_SUGGESTED_WORDS = 12;
+    static final int MAX_SUGGESTED_WORDS = 12;
     private static final int MAX_SUGGESTED_WORDS_VISIBLE = 3;
 
     private TextView    m_targetWordText;
     private TextView    m_autocompleteWordText;
     private Button      m_acceptButton;
-    private ListView    m_suggestedList;
+    private SuggestionStripView m_suggestedList;
+    private View        m_keyboardContainer;
+    // Color the typed and completed parts of the autocomplete word, moved rather than recreated
+    private ForegroundColorSpan m_typedSpan;
+    private ForegroundColorSpan m_autocompleteSpan;
+    private int m_errorColor;
 
     private Session m_currentSession;
     private int m_currentKeyboardTrialsRemaining;
     private Trial m_currentTrial;
+    // Set while the next trial is being stored, during which input is ignored
+    private boolean m_trialPending;
     private String m_autocompleteWord;
-    private final List<CharSequence> m_keysPressed = new ArrayList<>();
-    private ArrayAdapter<String> m_suggestedAdapter;
+    private SuggestionPipeline m_suggestionPipeline;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -52,7 +56,8 @@ public class TrialActivity extends AppCompatActivity
         m_targetWordText = (TextView) findViewById(R.id.activity_trial_target_word);
         m_autocompleteWordText = (TextView) findViewById(R.id.activity_trial_autocomplete_word);
         m_acceptButton = (Button) findViewById(R.id.activity_trial_accept);
-        m_suggestedList = (ListView) findViewById(R.id.activity_trial_suggestions);
+        m_suggestedList = (SuggestionStripView) findViewById(R.id.activity_trial_suggestions);
+        m_keyboardContainer = findViewById(R.id.activity_trial_keyboard_container);
 
         m_acceptButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -62,41 +67,86 @@ public class TrialActivity extends AppCompatActivity
         });
         m_acceptButton.setEnabled(false);
 
-        // Set up the adapter to handle the list of suggested words
-        m_suggestedAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1);
-        m_suggestedList.setAdapter(m_suggestedAdapter);
-        m_suggestedList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        m_suggestedList.setMaxVisibleItems(MAX_SUGGESTED_WORDS_VISIBLE);
+        m_suggestedList.setOnSuggestionClickListener(new SuggestionStripView.OnSuggestionClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                acceptWord(EntryMethod.ALTERNATE_SUGGESTION_SELECTED, m_suggestedAdapter.getItem(position));
+            public void onSuggestionClicked(String word) {
+                acceptWord(EntryMethod.ALTERNATE_SUGGESTION_SELECTED, word);
             }
         });
 
+        m_typedSpan = new ForegroundColorSpan(getColor(R.color.colorTyped));
+        m_autocompleteSpan = new ForegroundColorSpan(getColor(R.color.colorAutocomplete));
+        m_errorColor = getColor(R.color.colorError);
+
         // Initialize the session
 
         // TODO: Handle re-creation of this activity by un-bundling the session id (if available)
         Intent intent = getIntent();
-        String participantId = intent.getStringExtra(PARTICIPANT_ID_PARAM);
+        startSession(intent.getStringExtra(PARTICIPANT_ID_PARAM));
+    }
+
+    /**
+     * Creates the session in the background once the app is ready, and only then shows the
+     * keyboard and the first trial.
+     */
+    private void startSession(final String participantId) {
+        final Bootstrap bootstrap = KeyboardApp.getBootstrap();
+        bootstrap.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                final List<KeyboardType> keyboardOrder = bootstrap.getNextKeyboardOrder();
+                AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        KeyboardApp.getSuggestionIndex().warmCache(keyboardOrder);
+                    }
+                });
+                // Inflates every keyboard while the session is being stored
+                addKeyboardFragment(keyboardOrder.get(0));
+                Session.createSession(participantId, keyboardOrder, new AsyncDatabase.Callback<Session>() {
+                    @Override
+                    public void onResult(Session session) {
+                        onSessionCreated(session);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onSessionCreated(Session session) {
+        if (isDestroyed()) {
+            session.cancel();
+            return;
+        }
 
-        // Fetch the last session to determine the keyboard order and
-        m_currentSession = Session.createSession(participantId, getNextKeyboardOrder());
+        m_currentSession = session;
+        m_suggestionPipeline = new SuggestionPipeline(MAX_SUGGESTED_WORDS, this);
         m_currentKeyboardTrialsRemaining = KeyboardApp.getTrialsPerKeyboard();
         setUpNextTrial();
     }
 
     @Override
-    public void onBackPressed() {
-        m_currentSession.cancel();
-        super.onBackPressed();
+    protected void onPause() {
+        super.onPause();
+        KeyboardApp.getJournal().flush();
     }
 
-    private List<KeyboardType> getNextKeyboardOrder() {
-        Session lastSession = KeyboardApp.getDatabase().getLastCompletedSession();
-        if (lastSession == null) {
-            return DEFAULT_KEYBOARD_ORDER;
-        } else {
-            return KeyboardType.nextKeyboardOrder(lastSession.getKeyboardOrder());
+    @Override
+    protected void onDestroy() {
+        if (m_suggestionPipeline != null) {
+            m_suggestionPipeline.quit();
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    public void onBackPressed() {
+        if (m_currentSession != null) {
+            m_currentSession.cancel();
+            KeyboardApp.getJournal().flush();
         }
+        super.onBackPressed();
     }
 
     private void setUpNextTrial() {
@@ -121,19 +171,42 @@ public class TrialActivity extends AppCompatActivity
 
         if (nextKeyboard == null) {
             m_currentSession.complete();
+            KeyboardApp.getBootstrap().onSessionCompleted(m_currentSession);
             finish();
             return;
         }
 
         // Create the new trial based on a randomly chosen word
-        m_currentTrial = Trial.createTrial(m_currentSession.getSessionId(),
-                KeyboardApp.getDatabase().getRandomWord(), nextKeyboard);
+        final KeyboardMetrics metrics = KeyboardApp.getMetrics();
+        long start = System.nanoTime();
+        String targetWord = KeyboardApp.getBootstrap().takeTargetWord();
+        metrics.getRandomWordLatency().recordSince(start);
+
+        m_trialPending = true;
+        m_acceptButton.setEnabled(false);
+        final long createStart = System.nanoTime();
+        Trial.createTrial(m_currentSession.getSessionId(), targetWord, nextKeyboard,
+                new AsyncDatabase.Callback<Trial>() {
+                    @Override
+                    public void onResult(Trial trial) {
+                        metrics.getTrialCreateLatency().recordSince(createStart);
+                        if (!isDestroyed()) {
+                            startTrial(trial);
+                        }
+                    }
+                });
+    }
+
+    private void startTrial(Trial trial) {
+        m_currentTrial = trial;
+        m_trialPending = false;
+        KeyboardApp.getMetrics().sampleHeap();
 
         // Clear previous state of activity for new word entry
         m_targetWordText.setText(m_currentTrial.getTargetWord());
         m_autocompleteWord = null;
-        m_autocompleteWordText.setText("");
-        m_keysPressed.clear();
+        setAutocompleteText("", 0);
+        m_suggestionPipeline.reset(m_currentTrial);
         refreshSuggestions(Collections.<String>emptyList());
         updateKeyboardFragment(m_currentTrial.getKeyboardType());
 
@@ -144,92 +217,94 @@ public class TrialActivity extends AppCompatActivity
         m_currentTrial.start();
     }
 
-    private void updateKeyboardFragment(KeyboardType keyboardType) {
+    /**
+     * Adds the fragment holding every keyboard, hidden until the first trial starts. A fragment
+     * restored with the activity is kept.
+     */
+    private void addKeyboardFragment(KeyboardType keyboardType) {
         FragmentManager fragmentManager = getSupportFragmentManager();
-        QwertyKeyboardFragment fragment = (QwertyKeyboardFragment) fragmentManager.findFragmentByTag(
-                KEYBOARD_FRAGMENT_TAG);
-        if (fragment != null && fragment.getKeyboardType() == keyboardType) {
+        if (fragmentManager.findFragmentByTag(KEYBOARD_FRAGMENT_TAG) != null) {
             return;
         }
 
-        fragment = QwertyKeyboardFragment.newInstance(keyboardType);
+        m_keyboardContainer.setVisibility(View.GONE);
         FragmentTransaction transaction = fragmentManager.beginTransaction();
-        transaction.replace(R.id.activity_trial_keyboard_container, fragment, KEYBOARD_FRAGMENT_TAG);
+        transaction.add(R.id.activity_trial_keyboard_container,
+                QwertyKeyboardFragment.newInstance(keyboardType), KEYBOARD_FRAGMENT_TAG);
         transaction.commit();
-        Log.d(TAG, "Keyboard type changed to " + keyboardType.toString());
+    }
+
+    private void updateKeyboardFragment(KeyboardType keyboardType) {
+        m_keyboardContainer.setVisibility(View.VISIBLE);
+        QwertyKeyboardFragment fragment = (QwertyKeyboardFragment) getSupportFragmentManager().findFragmentByTag(
+                KEYBOARD_FRAGMENT_TAG);
+        if (fragment.getKeyboardType() != keyboardType) {
+            fragment.setKeyboardType(keyboardType);
+            Log.d(TAG, "Keyboard type changed to " + keyboardType.toString());
+        }
     }
 
     private void acceptWord(EntryMethod method, String word) {
+        if (m_trialPending) {
+            return;
+        }
         Log.i(TAG, "Autocomplete word accepted: " + word);
 
+        long start = System.nanoTime();
         m_currentTrial.end(method, word);
+        KeyboardApp.getMetrics().getTrialSaveLatency().recordSince(start);
         setUpNextTrial();
     }
 
     @Override
-    public void onKeyPressed(CharSequence keyChars) {
-        Log.i(TAG, "Key pressed: " + keyChars);
+    public void onKeyPressed(int keyIndex, float x, float y) {
+        // Not logged, since building the message would allocate on every key
+        if (m_trialPending) {
+            return;
+        }
         m_acceptButton.setEnabled(true);
-        m_keysPressed.add(keyChars);
-        List<String> suggestedWords = KeyboardApp.getDatabase().getSuggestedWords(
-                m_keysPressed, MAX_SUGGESTED_WORDS);
+        m_suggestionPipeline.onKeyPressed(keyIndex, x, y);
+    }
 
+    @Override
+    public void onSuggestionsReady(int keyCount, List<String> suggestedWords) {
         if (suggestedWords.isEmpty()) {
             m_autocompleteWord = null;
-            m_autocompleteWordText.setText(getResources().getString(R.string.trial_no_word_found));
-            m_autocompleteWordText.setTextColor(getResources().getColor(R.color.colorError, null));
+            setAutocompleteText(getString(R.string.trial_no_word_found), 0);
             refreshSuggestions(suggestedWords);
         } else {
             int autocompleteIndex = suggestedWords.size() - 1;
             m_autocompleteWord = suggestedWords.get(autocompleteIndex);
-            String html =
-                    "<font color=\"#" + getHtmlColor(R.color.colorTyped) + "\">" +
-                    m_autocompleteWord.substring(0, m_keysPressed.size()) +
-                    "</font>" +
-                    "<font color=\"#" + getHtmlColor(R.color.colorAutocomplete) + "\">" +
-                    m_autocompleteWord.substring(m_keysPressed.size(), m_autocompleteWord.length()) +
-                    "</font>";
-            m_autocompleteWordText.setText(Html.fromHtml(html));
-
+            setAutocompleteText(m_autocompleteWord, keyCount);
             refreshSuggestions(suggestedWords.subList(0, autocompleteIndex));
-            m_suggestedList.smoothScrollToPosition(m_suggestedAdapter.getCount() - 1);
         }
     }
 
-    private void refreshSuggestions(List<String> suggestedWords) {
-        m_suggestedAdapter.clear();
-        m_suggestedAdapter.addAll(suggestedWords);
-        m_suggestedAdapter.notifyDataSetChanged();
-
-        // Adjust the height to fit items
-        int numItemsVisible = Math.min(MAX_SUGGESTED_WORDS_VISIBLE, suggestedWords.size());
-
-        if (numItemsVisible == 0) {
-            m_suggestedList.setVisibility(View.GONE);
-        } else {
-            m_suggestedList.setVisibility(View.VISIBLE);
+    /**
+     * Replaces the autocomplete text in place, coloring the first {@code typedLength} characters as
+     * typed and the rest as completed. Without any typed characters the text is shown as an error.
+     */
+    private void setAutocompleteText(String text, int typedLength) {
+        Editable editable = m_autocompleteWordText.getEditableText();
+        editable.replace(0, editable.length(), text);
+        if (typedLength == 0) {
+            editable.removeSpan(m_typedSpan);
+            editable.removeSpan(m_autocompleteSpan);
+            m_autocompleteWordText.setTextColor(m_errorColor);
+            return;
         }
 
-        // Get total height of visible items.
-        int totalItemsHeight = 0;
-        for (int i = 0; i < numItemsVisible; ++i) {
-            View item = m_suggestedAdapter.getView(i, null, m_suggestedList);
-            item.measure(0, 0);
-            totalItemsHeight += item.getMeasuredHeight();
+        final int split = Math.min(typedLength, text.length());
+        editable.setSpan(m_typedSpan, 0, split, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        // Exclusive spans cannot be empty
+        if (split < text.length()) {
+            editable.setSpan(m_autocompleteSpan, split, text.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        } else {
+            editable.removeSpan(m_autocompleteSpan);
         }
-
-        // Get total height of all item dividers.
-        int totalDividersHeight = m_suggestedList.getDividerHeight() * (numItemsVisible - 1);
-
-        // Set list height.
-        ViewGroup.LayoutParams params = m_suggestedList.getLayoutParams();
-        params.height = totalItemsHeight + totalDividersHeight;
-        m_suggestedList.setLayoutParams(params);
-        m_suggestedList.requestLayout();
     }
 
-    private String getHtmlColor(int colorRes) {
-        Resources res = getResources();
-        return Integer.toHexString(res.getColor(colorRes, null) & 0x00FFFFFF);
+    private void refreshSuggestions(List<String> suggestedWords) {
+        m_suggestedList.setSuggestions(suggestedWords);
     }
 }
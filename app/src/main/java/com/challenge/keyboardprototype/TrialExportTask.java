@@ -0,0 +1,107 @@
+package com.challenge.keyboardprototype;
+
+import android.app.ProgressDialog;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Toast;
+import com.challenge.keyboardprototype.db.Database;
+import com.challenge.keyboardprototype.export.TrialExportWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves all trial data to a CSV file in the background while displaying a progress dialog.
+ */
+public class TrialExportTask extends AsyncTask<Void, Integer, Boolean> {
+    private static final String TAG = "KB-Export";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final Context   m_context;
+    private final File      m_outputFile;
+    private ProgressDialog  m_progressDialog;
+
+    public TrialExportTask(Context context, File outputFile) {
+        m_context = context;
+        m_outputFile = outputFile;
+    }
+
+    @Override
+    protected void onPreExecute() {
+        m_progressDialog = new ProgressDialog(m_context);
+        m_progressDialog.setTitle(m_context.getString(R.string.trial_export_progress_title));
+        m_progressDialog.setIndeterminate(true);
+        m_progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        m_progressDialog.setCancelable(false);
+        m_progressDialog.show();
+    }
+
+    @Override
+    protected Boolean doInBackground(Void... params) {
+        // Make sure the latest session and trial updates are part of the export
+        KeyboardApp.getJournal().flushNow();
+
+        Database db = KeyboardApp.getDatabase();
+        publishProgress(0, db.getTrialCount());
+
+        TrialExportWriter out = null;
+        try {
+            out = new TrialExportWriter(new BufferedWriter(new FileWriter(m_outputFile), WRITE_BUFFER_SIZE));
+            out.writeHeader();
+
+            long start = SystemClock.elapsedRealtime();
+            int numTrials = db.exportTrials(out, new Database.ExportProgressListener() {
+                @Override
+                public void onTrialsExported(int count) {
+                    publishProgress(count);
+                }
+            });
+            out.close();
+            out = null;
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            KeyboardApp.getMetrics().getExportLatency().record(elapsed, TimeUnit.MILLISECONDS);
+            Log.i(TAG, "Exported " + numTrials + " trials in " + elapsed + "ms.");
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save trial data.", e);
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to close trial data file.", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void onProgressUpdate(Integer... values) {
+        if (values.length > 1) {
+            m_progressDialog.setIndeterminate(false);
+            m_progressDialog.setMax(values[1]);
+        }
+        m_progressDialog.setProgress(values[0]);
+    }
+
+    @Override
+    protected void onPostExecute(Boolean success) {
+        m_progressDialog.dismiss();
+
+        Toast toast;
+        if (success) {
+            toast = Toast.makeText(m_context,
+                    m_context.getString(R.string.main_save_data_complete_prefix) + m_outputFile.getName(),
+                    Toast.LENGTH_LONG);
+        } else {
+            toast = Toast.makeText(m_context, R.string.main_save_failed, Toast.LENGTH_SHORT);
+        }
+        toast.show();
+    }
+}
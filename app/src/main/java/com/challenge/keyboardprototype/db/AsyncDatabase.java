@@ -0,0 +1,233 @@
+package com.challenge.keyboardprototype.db;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import com.challenge.keyboardprototype.model.KeyboardType;
+import com.challenge.keyboardprototype.model.Session;
+import com.challenge.keyboardprototype.model.SessionStatus;
+import com.challenge.keyboardprototype.model.Trial;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link Database} work off the main thread.
+ *
+ * Every write runs on one writer thread, in the order it was submitted, which is also where the
+ * {@link WriteBehindJournal} writes its batches. Reads run on a small pool alongside it, which
+ * write-ahead logging allows without waiting for the writer. Results are returned as futures, and
+ * callbacks are delivered on the main thread. A task that fails rethrows its error on the main
+ * thread, as it would have if it had been run there.
+ */
+public class AsyncDatabase {
+    private static final String TAG = "KB-AsyncDB";
+    private static final int READER_THREADS = 2;
+
+    /**
+     * Receives the result of a task on the main thread.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private final Context m_context;
+    private final Handler m_writeHandler;
+    private final ExecutorService m_readers;
+    private final Handler m_mainHandler = new Handler(Looper.getMainLooper());
+
+    public AsyncDatabase(Context context) {
+        m_context = context.getApplicationContext();
+
+        HandlerThread writer = new HandlerThread("KB-DBWrite", Process.THREAD_PRIORITY_BACKGROUND);
+        writer.start();
+        m_writeHandler = new Handler(writer.getLooper());
+
+        final AtomicInteger readerCount = new AtomicInteger();
+        m_readers = Executors.newFixedThreadPool(READER_THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "KB-DBRead-" + readerCount.incrementAndGet());
+            }
+        });
+    }
+
+    /**
+     * @return the database, opening it first if needed. Must not be called from the main thread.
+     */
+    public Database getDatabase() {
+        return Database.getInstance(m_context);
+    }
+
+    /**
+     * @return the handler of the writer thread, for scheduling writes
+     */
+    Handler getWriteHandler() {
+        return m_writeHandler;
+    }
+
+    /**
+     * Runs a task on the writer thread after every write submitted before it.
+     *
+     * @param callback receives the result on the main thread, or null
+     */
+    public <T> Future<T> write(Callable<T> task, Callback<T> callback) {
+        FutureTask<T> future = newTask(task, callback);
+        m_writeHandler.post(future);
+        return future;
+    }
+
+    /**
+     * Runs a task that only reads on the reader pool.
+     *
+     * @param callback receives the result on the main thread, or null
+     */
+    public <T> Future<T> read(Callable<T> task, Callback<T> callback) {
+        FutureTask<T> future = newTask(task, callback);
+        m_readers.execute(future);
+        return future;
+    }
+
+    private <T> FutureTask<T> newTask(Callable<T> task, final Callback<T> callback) {
+        return new FutureTask<T>(task) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                m_mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(callback);
+                    }
+                });
+            }
+
+            private void deliver(Callback<T> callback) {
+                T result;
+                try {
+                    result = get();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Database task failed.", e.getCause());
+                    throw new RuntimeException("Database task failed.", e.getCause());
+                }
+                if (callback != null) {
+                    callback.onResult(result);
+                }
+            }
+        };
+    }
+
+    // Sessions
+
+    public Future<Session> createSession(final String participantId, final List<KeyboardType> keyboardOrder,
+                                         Callback<Session> callback) {
+        return write(new Callable<Session>() {
+            @Override
+            public Session call() {
+                long sessionId = getDatabase().insertSession(
+                        participantId,
+                        KeyboardType.orderAsDbString(keyboardOrder),
+                        SessionStatus.CREATED.toString());
+                return new Session(sessionId, participantId, keyboardOrder, SessionStatus.CREATED,
+                        Session.UNDEFINED_TIMESTAMP);
+            }
+        }, callback);
+    }
+
+    /**
+     * Finds the most recently completed session, or null if there is none.
+     */
+    public Future<Session> getLastCompletedSession(Callback<Session> callback) {
+        return read(new Callable<Session>() {
+            @Override
+            public Session call() {
+                return getDatabase().getLastCompletedSession();
+            }
+        }, callback);
+    }
+
+    // Trials
+
+    public Future<Trial> createTrial(final long sessionId, final String targetWord, final KeyboardType keyboardType,
+                                     Callback<Trial> callback) {
+        return write(new Callable<Trial>() {
+            @Override
+            public Trial call() {
+                long trialId = getDatabase().insertTrial(sessionId, targetWord, keyboardType.getDbChar());
+                return new Trial(trialId, sessionId, keyboardType, targetWord,
+                        Trial.UNDEFINED_TIMESTAMP, Trial.UNDEFINED_TIMESTAMP, null, null);
+            }
+        }, callback);
+    }
+
+    // Dictionary
+
+    public Future<Integer> getWordCount(Callback<Integer> callback) {
+        return read(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return getDatabase().getWordCount();
+            }
+        }, callback);
+    }
+
+    /**
+     * Builds the key signature index of the dictionary table for every keyboard type that does
+     * not have a current one, which {@link SqliteSuggestionEngine} needs before it finds anything.
+     */
+    public Future<Void> ensureSignatures(Callback<Void> callback) {
+        return write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                Database db = getDatabase();
+                for (KeyboardType keyboardType : KeyboardType.values()) {
+                    db.ensureSignatures(keyboardType);
+                }
+                return null;
+            }
+        }, callback);
+    }
+
+    /**
+     * Deletes every session, trial and keystroke in one transaction.
+     *
+     * @return the number of sessions, trials and keystrokes deleted, in that order
+     */
+    public Future<int[]> clearTrialData(Callback<int[]> callback) {
+        return write(new Callable<int[]>() {
+            @Override
+            public int[] call() {
+                final Database db = getDatabase();
+                final int[] counts = new int[3];
+                db.doInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        counts[0] = db.deleteAllSessions();
+                        counts[1] = db.deleteAllTrials();
+                        counts[2] = db.deleteAllKeystrokes();
+                    }
+                });
+                return counts;
+            }
+        }, callback);
+    }
+}
@@ -4,19 +4,37 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
 import android.util.Log;
+import com.challenge.keyboardprototype.KeyboardApp;
+import com.challenge.keyboardprototype.KeyboardMetrics;
+import com.challenge.keyboardprototype.dictionary.ArrayLexicon;
+import com.challenge.keyboardprototype.dictionary.KeyLayout;
+import com.challenge.keyboardprototype.dictionary.WordListReader;
+import com.challenge.keyboardprototype.events.KeystrokeBuffer;
+import com.challenge.keyboardprototype.export.TrialExportWriter;
 import com.challenge.keyboardprototype.model.*;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Persistent storage of dictionary and trial data.
  *
+ * The database is opened in write-ahead logging mode, so queries from other threads read the last
+ * committed state instead of waiting for a write transaction to finish. The statements on the hot
+ * insert and update paths are compiled once and kept in {@link #m_statements}.
+ *
  * TODO: transactional consistency
  *
  * Created by lpayne on 2016-10-04.
@@ -28,22 +46,38 @@ public class Database {
 
     private final SQLiteDatabase  m_db;
     private final Context         m_context;
+    private final KeyboardMetrics m_metrics;
+    // Compiled statements by their SQL, each locked while it is bound and executed
+    private final Map<String, SQLiteStatement> m_statements = new HashMap<>();
 
     private Database(Context context) {
         m_db = new DatabaseOpenHelper(context).getWritableDatabase();
         m_context = context;
+        m_metrics = KeyboardApp.getMetrics();
     }
 
-    public static Database getInstance(Context context) {
+    public static synchronized Database getInstance(Context context) {
         if (m_instance == null) {
-            m_instance = new Database(context);
+            m_instance = new Database(context.getApplicationContext());
         }
 
         return m_instance;
     }
 
+    /**
+     * @return the size in bytes of the database file and its journal
+     */
+    public long getFileSize() {
+        String path = m_db.getPath();
+        return new File(path).length() + new File(path + "-journal").length() + new File(path + "-wal").length() +
+                new File(path + "-shm").length();
+    }
+
+    /**
+     * Runs the runnable in a transaction that only excludes other writers.
+     */
     public void doInTransaction(Runnable runnable) {
-        m_db.beginTransaction();
+        m_db.beginTransactionNonExclusive();
         try {
             runnable.run();
             m_db.setTransactionSuccessful();
@@ -52,6 +86,49 @@ public class Database {
         }
     }
 
+    /**
+     * @return the statement compiled from {@code sql}, compiled on first use and kept for the
+     * lifetime of the database. Callers must hold the statement's lock while using it.
+     */
+    private SQLiteStatement getStatement(String sql) {
+        synchronized (m_statements) {
+            SQLiteStatement statement = m_statements.get(sql);
+            if (statement == null) {
+                statement = m_db.compileStatement(sql);
+                m_statements.put(sql, statement);
+            }
+            return statement;
+        }
+    }
+
+    private static void bindNullableLong(SQLiteStatement statement, int index, Long value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, value);
+        }
+    }
+
+    private static void bindTouchCoordinate(SQLiteStatement statement, int index, float value) {
+        if (Float.isNaN(value)) {
+            statement.bindNull(index);
+        } else {
+            statement.bindDouble(index, value);
+        }
+    }
+
+    private static void bindNullableString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    // Progress is reported at most this often by bulk imports and exports
+    private static final int PROGRESS_ROWS = 10000;
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
     // Sessions
 
     private static final String[] SESSION_FIELDS = new String[] {
@@ -65,27 +142,49 @@ public class Database {
                 cursor.getLong(4));
     }
 
+    private static final String INSERT_SESSION =
+            "INSERT INTO session (participant_id, keyboard_type_order, status) VALUES (?, ?, ?)";
+    // Fields that are not part of the stored values keep what they had
+    private static final String UPDATE_SESSION =
+            "UPDATE session SET status = ?, start_ts = COALESCE(?, start_ts) WHERE session_id = ?";
+
     public long insertSession(String participantId, String keyboardOrder, String status) {
-        ContentValues values = new ContentValues(3);
-        values.put("participant_id", participantId);
-        values.put("keyboard_type_order", keyboardOrder);
-        values.put("status", status);
-        return m_db.insert("session", null, values);
+        SQLiteStatement statement = getStatement(INSERT_SESSION);
+        synchronized (statement) {
+            statement.bindString(1, participantId);
+            statement.bindString(2, keyboardOrder);
+            statement.bindString(3, status);
+            return statement.executeInsert();
+        }
     }
 
-    public void updateSession(Session session) {
+    /**
+     * @return the mutable fields of a session as they should be stored
+     */
+    static ContentValues getSessionValues(Session session) {
         ContentValues values = new ContentValues(2);
         values.put("status", session.getStatus().toString());
         if (session.hasStarted()) {
             values.put("start_ts", session.getStartTimestamp());
         }
+        return values;
+    }
 
-        int numRows = m_db.update("session",
-                values,
-                "session_id = ?",
-                new String[] { Long.toString(session.getSessionId())});
+    public void updateSession(Session session) {
+        updateSession(session.getSessionId(), getSessionValues(session));
+    }
+
+    void updateSession(long sessionId, ContentValues values) {
+        SQLiteStatement statement = getStatement(UPDATE_SESSION);
+        int numRows;
+        synchronized (statement) {
+            statement.bindString(1, values.getAsString("status"));
+            bindNullableLong(statement, 2, values.getAsLong("start_ts"));
+            statement.bindLong(3, sessionId);
+            numRows = statement.executeUpdateDelete();
+        }
         if (numRows == 0) {
-            throw new IllegalArgumentException("Session " + session.getSessionId() + " did not exist.");
+            throw new IllegalArgumentException("Session " + sessionId + " did not exist.");
         }
     }
 
@@ -146,15 +245,27 @@ public class Database {
                 cursor.isNull(4) ? null : cursor.getString(4));
     }
 
+    private static final String INSERT_TRIAL =
+            "INSERT INTO trial (session_id, target_word, keyboard_type) VALUES (?, ?, ?)";
+    private static final String UPDATE_TRIAL =
+            "UPDATE trial SET start_ts = ?, end_ts = COALESCE(?, end_ts), " +
+            "entry_method = COALESCE(?, entry_method), entered_word = COALESCE(?, entered_word) " +
+            "WHERE trial_id = ?";
+
     public long insertTrial(long sessionId, String targetWord, char keyboardType) {
-        ContentValues values = new ContentValues(3);
-        values.put("session_id", sessionId);
-        values.put("target_word", targetWord);
-        values.put("keyboard_type", String.valueOf(keyboardType));
-        return m_db.insert("trial", null, values);
+        SQLiteStatement statement = getStatement(INSERT_TRIAL);
+        synchronized (statement) {
+            statement.bindLong(1, sessionId);
+            statement.bindString(2, targetWord);
+            statement.bindString(3, String.valueOf(keyboardType));
+            return statement.executeInsert();
+        }
     }
 
-    public void updateTrial(Trial trial) {
+    /**
+     * @return the mutable fields of a trial as they should be stored
+     */
+    static ContentValues getTrialValues(Trial trial) {
         ContentValues values = new ContentValues(4);
         values.put("start_ts", trial.getStartTimestamp());
 
@@ -163,10 +274,26 @@ public class Database {
             values.put("entry_method", trial.getEntryMethod().toString());
             values.put("entered_word", trial.getEnteredWord());
         }
+        return values;
+    }
 
-        int numRows = m_db.update("trial", values, "trial_id = ?", new String[] { Long.toString(trial.getTrialId()) });
+    public void updateTrial(Trial trial) {
+        updateTrial(trial.getTrialId(), getTrialValues(trial));
+    }
+
+    void updateTrial(long trialId, ContentValues values) {
+        SQLiteStatement statement = getStatement(UPDATE_TRIAL);
+        int numRows;
+        synchronized (statement) {
+            statement.bindLong(1, values.getAsLong("start_ts"));
+            bindNullableLong(statement, 2, values.getAsLong("end_ts"));
+            bindNullableString(statement, 3, values.getAsString("entry_method"));
+            bindNullableString(statement, 4, values.getAsString("entered_word"));
+            statement.bindLong(5, trialId);
+            numRows = statement.executeUpdateDelete();
+        }
         if (numRows == 0) {
-            throw new IllegalArgumentException("Trial " + trial.getTrialId() + " did not exist.");
+            throw new IllegalArgumentException("Trial " + trialId + " did not exist.");
         }
     }
 
@@ -190,22 +317,176 @@ public class Database {
         return trials;
     }
 
+    // Keystrokes
+
+    private static final String INSERT_KEYSTROKE =
+            "INSERT INTO keystroke (trial_id, keyboard_type, key_index, key_count, suggestion_count, press_ns, " +
+            "touch_x, touch_y) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    public int deleteAllKeystrokes() {
+        return m_db.delete("keystroke", null, null);
+    }
+
+    /**
+     * Moves every event waiting in the buffer into the keystroke table. Must only be called from
+     * the buffer's consumer thread, normally inside a transaction.
+     *
+     * @return the number of keystrokes inserted
+     */
+    int insertKeystrokes(KeystrokeBuffer keystrokes) {
+        final SQLiteStatement statement = getStatement(INSERT_KEYSTROKE);
+        synchronized (statement) {
+            return keystrokes.drainTo(new KeystrokeBuffer.Sink() {
+                @Override
+                public void onKeystroke(long trialId, long timestampNanos, char keyboardType, int keyIndex,
+                                        float touchX, float touchY, int keyCount, int suggestionCount) {
+                    statement.bindLong(1, trialId);
+                    statement.bindString(2, String.valueOf(keyboardType));
+                    statement.bindLong(3, keyIndex);
+                    statement.bindLong(4, keyCount);
+                    statement.bindLong(5, suggestionCount);
+                    statement.bindLong(6, timestampNanos);
+                    bindTouchCoordinate(statement, 7, touchX);
+                    bindTouchCoordinate(statement, 8, touchY);
+                    statement.executeInsert();
+                }
+            });
+        }
+    }
+
+    // Export
+
+    private static final String EXPORT_QUERY =
+            "SELECT s.session_id, s.participant_id, s.status, s.start_ts," +
+            " t.trial_id, t.keyboard_type, t.target_word, t.entered_word, t.entry_method, t.start_ts, t.end_ts" +
+            " FROM session s JOIN trial t ON t.session_id = s.session_id" +
+            " ORDER BY s.session_id ASC, t.trial_id ASC";
+
+    /**
+     * Receives progress updates from {@link #exportTrials}.
+     */
+    public interface ExportProgressListener {
+        void onTrialsExported(int numTrials);
+    }
+
+    public int getTrialCount() {
+        Cursor cursor = m_db.rawQuery("SELECT COUNT(*) FROM trial", null);
+        int count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        cursor.close();
+        return count;
+    }
+
+    /**
+     * Streams every trial with its session to a writer using a single query, without building
+     * model objects. Progress is reported like {@link #importWords}.
+     *
+     * @return the number of trials written
+     */
+    public int exportTrials(TrialExportWriter out, ExportProgressListener listener) {
+        Cursor cursor = m_db.rawQuery(EXPORT_QUERY, null);
+        int numTrials = 0;
+        try {
+            long nextProgressTime = SystemClock.elapsedRealtime() + PROGRESS_INTERVAL_MS;
+            int nextProgressTrials = PROGRESS_ROWS;
+
+            while (cursor.moveToNext()) {
+                String status = cursor.getString(2);
+                String entryMethod = cursor.getString(8);
+                out.writeRow(cursor.getLong(0),
+                        cursor.getString(1),
+                        !SessionStatus.CREATED.name().equals(status),
+                        cursor.getLong(3),
+                        status,
+                        cursor.getLong(4),
+                        KeyboardType.fromDbChar(cursor.getString(5).charAt(0)).toString(),
+                        cursor.getString(6),
+                        cursor.getString(7),
+                        entryMethod,
+                        cursor.getLong(9),
+                        cursor.getLong(10));
+                ++numTrials;
+
+                if (numTrials >= nextProgressTrials || SystemClock.elapsedRealtime() >= nextProgressTime) {
+                    listener.onTrialsExported(numTrials);
+                    nextProgressTime = SystemClock.elapsedRealtime() + PROGRESS_INTERVAL_MS;
+                    nextProgressTrials = numTrials + PROGRESS_ROWS;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        listener.onTrialsExported(numTrials);
+        return numTrials;
+    }
+
     // Dictionary
 
-    public void insertWord(String word, int frequency) {
-        ContentValues values = new ContentValues(2);
-        values.put("word", word);
-        values.put("frequency", frequency);
-        m_db.insertWithOnConflict("dictionary", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    /**
+     * Receives progress updates from {@link #importWords}.
+     */
+    public interface ImportProgressListener {
+        void onWordsImported(int numWords);
     }
 
-    public String getRandomWord() {
-        Cursor cursor = m_db.query("dictionary", new String[] { "word" },
-                null, null, null, null, "RANDOM()", "1");
+    /**
+     * Loads every word of a word list into the dictionary in a single transaction, replacing the
+     * frequency of words that already exist.
+     *
+     * Progress is reported at most every {@link #PROGRESS_ROWS} words or
+     * {@link #PROGRESS_INTERVAL_MS} milliseconds, and once more when the import finishes.
+     *
+     * @return the number of words read
+     */
+    public int importWords(WordListReader reader, ImportProgressListener listener) throws IOException {
+        SQLiteStatement statement = m_db.compileStatement(
+                "INSERT OR REPLACE INTO dictionary (word, frequency) VALUES (?, ?)");
+        int numWords = 0;
+
+        m_db.beginTransactionNonExclusive();
+        try {
+            // Signatures are rebuilt on the writer thread once the new dictionary is loaded
+            m_db.delete("dictionary_signature", null, null);
+            m_db.delete("signature_layout", null, null);
+
+            long nextProgressTime = SystemClock.elapsedRealtime() + PROGRESS_INTERVAL_MS;
+            int nextProgressWords = PROGRESS_ROWS;
+
+            while (reader.next()) {
+                statement.bindString(1, reader.getWord());
+                statement.bindLong(2, reader.getFrequency());
+                statement.executeInsert();
+                ++numWords;
+
+                if (numWords >= nextProgressWords || SystemClock.elapsedRealtime() >= nextProgressTime) {
+                    listener.onWordsImported(numWords);
+                    nextProgressTime = SystemClock.elapsedRealtime() + PROGRESS_INTERVAL_MS;
+                    nextProgressWords = numWords + PROGRESS_ROWS;
+                }
+            }
+            m_db.setTransactionSuccessful();
+        } finally {
+            m_db.endTransaction();
+            statement.close();
+            synchronized (m_currentSignatures) {
+                m_currentSignatures.clear();
+            }
+        }
+
+        listener.onWordsImported(numWords);
+        return numWords;
+    }
+
+    public ArrayLexicon loadLexicon() {
+        Cursor cursor = m_db.query("dictionary", new String[] { "word", "frequency" },
+                null, null, null, null, null);
 
-        String word = cursor.moveToFirst() ? cursor.getString(0) : null;
+        ArrayLexicon.Builder builder = new ArrayLexicon.Builder();
+        while (cursor.moveToNext()) {
+            builder.add(cursor.getString(0), cursor.getInt(1));
+        }
         cursor.close();
-        return word;
+        return builder.build();
     }
 
     public int getWordCount() {
@@ -215,34 +496,184 @@ public class Database {
         return count;
     }
 
-    public List<String> getSuggestedWords(List<CharSequence> keysPressed, int numWords) {
-        if (keysPressed.isEmpty()) {
+    /**
+     * Finds the most frequent words that start with the given key sequence using the signature
+     * index. Finds nothing until {@link #ensureSignatures} has run for the keyboard type.
+     *
+     * @return up to {@code numWords} words in ascending order of frequency, so the best match is last
+     */
+    public List<String> getSuggestedWords(KeyboardType keyboardType, int[] keys, int keyCount, int numWords) {
+        String[] selectionArgs = getSignatureRange(keyboardType, keys, keyCount);
+        if (selectionArgs == null) {
             return Collections.emptyList();
         }
+        long start = System.nanoTime();
 
-        StringBuilder sb = new StringBuilder();
-
-        sb.append("word GLOB '");
-        for (CharSequence keyChars : keysPressed) {
-            // Not ideal to embed characters here, but they should always be legit ascii alpha for now
-            sb.append("[").append(keyChars.toString().toLowerCase()).append("]");
-        }
-        sb.append("*'");
-
-        Cursor cursor = m_db.query("dictionary",
+        Cursor cursor = m_db.query("dictionary_signature",
                 new String[] { "word" },
-                sb.toString(),
-                null,
+                SIGNATURE_RANGE_SELECTION,
+                selectionArgs,
                 null,
                 null,
-                "frequency",
+                "frequency DESC",
                 Integer.toString(numWords));
 
+        // Callers expect the best match last
         List<String> words = new ArrayList<>(cursor.getCount());
         while (cursor.moveToNext()) {
             words.add(cursor.getString(0));
         }
         cursor.close();
+        Collections.reverse(words);
+        m_metrics.getSuggestionQueryLatency(keyboardType).recordSince(start);
         return words;
     }
+
+    /**
+     * @return the number of words that start with the given key sequence
+     */
+    public int getSuggestedWordCount(KeyboardType keyboardType, int[] keys, int keyCount) {
+        String[] selectionArgs = getSignatureRange(keyboardType, keys, keyCount);
+        if (selectionArgs == null) {
+            return 0;
+        }
+
+        Cursor cursor = m_db.rawQuery(
+                "SELECT COUNT(*) FROM dictionary_signature WHERE " + SIGNATURE_RANGE_SELECTION, selectionArgs);
+        int count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        cursor.close();
+        return count;
+    }
+
+    private static final String SIGNATURE_RANGE_SELECTION = "layout = ? AND signature >= ? AND signature < ?";
+
+    /**
+     * @return the arguments for {@link #SIGNATURE_RANGE_SELECTION}, or null if no word can match
+     */
+    private String[] getSignatureRange(KeyboardType keyboardType, int[] keys, int keyCount) {
+        if (keyCount == 0 || !hasCurrentSignatures(keyboardType)) {
+            return null;
+        }
+
+        // Every signature starting with the prefix sorts between it and the prefix with its
+        // last key incremented
+        char[] prefix = new char[keyCount];
+        for (int i = 0; i < keyCount; ++i) {
+            if (keys[i] < 0) {
+                return null;
+            }
+            prefix[i] = signatureChar(keys[i]);
+        }
+        String lower = new String(prefix);
+        ++prefix[keyCount - 1];
+        String upper = new String(prefix);
+
+        return new String[] { String.valueOf(keyboardType.getDbChar()), lower, upper };
+    }
+
+    // Key signatures
+
+    // Guarded by itself. Only the writer thread adds to it.
+    private final Set<KeyboardType> m_currentSignatures = EnumSet.noneOf(KeyboardType.class);
+
+    private static char signatureChar(int keyIndex) {
+        return (char) ('a' + keyIndex);
+    }
+
+    private static String describeKeys(KeyLayout layout) {
+        StringBuilder sb = new StringBuilder();
+        for (int key = 0; key < layout.getKeyCount(); ++key) {
+            if (key > 0) {
+                sb.append(' ');
+            }
+            sb.append(layout.getKeyLetters(key));
+        }
+        return sb.toString();
+    }
+
+    private boolean hasCurrentSignatures(KeyboardType keyboardType) {
+        synchronized (m_currentSignatures) {
+            return m_currentSignatures.contains(keyboardType);
+        }
+    }
+
+    /**
+     * Makes sure the signature index covers the given keyboard type, rebuilding only that
+     * keyboard's signatures if they are missing or were computed for different keys. Must only be
+     * called from the writer thread, see {@link AsyncDatabase#ensureSignatures}.
+     */
+    public void ensureSignatures(KeyboardType keyboardType) {
+        if (hasCurrentSignatures(keyboardType)) {
+            return;
+        }
+
+        String layout = String.valueOf(keyboardType.getDbChar());
+        String keys = describeKeys(keyboardType.getKeyLayout());
+        Cursor cursor = m_db.query("signature_layout", new String[] { "keys" },
+                "layout = ?", new String[] { layout }, null, null, null);
+        boolean current = cursor.moveToFirst() && keys.equals(cursor.getString(0));
+        cursor.close();
+
+        // Queries keep finding nothing for this keyboard until the rebuild is committed
+        if (!current) {
+            rebuildSignatures(keyboardType, layout, keys);
+        }
+        synchronized (m_currentSignatures) {
+            m_currentSignatures.add(keyboardType);
+        }
+    }
+
+    private void rebuildSignatures(KeyboardType keyboardType, String layout, String keys) {
+        long start = SystemClock.elapsedRealtime();
+        KeyLayout keyLayout = keyboardType.getKeyLayout();
+        SQLiteStatement statement = m_db.compileStatement(
+                "INSERT INTO dictionary_signature (layout, signature, frequency, word) VALUES (?, ?, ?, ?)");
+        int numWords = 0;
+
+        m_db.beginTransactionNonExclusive();
+        try {
+            m_db.delete("dictionary_signature", "layout = ?", new String[] { layout });
+
+            Cursor cursor = m_db.query("dictionary", new String[] { "word", "frequency" },
+                    null, null, null, null, null);
+            char[] signature = new char[32];
+            while (cursor.moveToNext()) {
+                String word = cursor.getString(0);
+                if (signature.length < word.length()) {
+                    signature = new char[word.length()];
+                }
+
+                // Stop at the first character that no key can type
+                int length = 0;
+                int keyIndex;
+                while (length < word.length() && (keyIndex = keyLayout.keyIndexOf(word.charAt(length))) >= 0) {
+                    signature[length++] = signatureChar(keyIndex);
+                }
+                if (length == 0) {
+                    continue;
+                }
+
+                statement.bindString(1, layout);
+                statement.bindString(2, new String(signature, 0, length));
+                statement.bindLong(3, cursor.getLong(1));
+                statement.bindString(4, word);
+                statement.executeInsert();
+                ++numWords;
+            }
+            cursor.close();
+
+            ContentValues values = new ContentValues(3);
+            values.put("layout", layout);
+            values.put("keys", keys);
+            values.put("word_count", numWords);
+            m_db.insertWithOnConflict("signature_layout", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            m_db.setTransactionSuccessful();
+        } finally {
+            m_db.endTransaction();
+            statement.close();
+        }
+
+        Log.i(TAG, "Built " + numWords + " " + keyboardType + " signatures in " +
+                (SystemClock.elapsedRealtime() - start) + "ms");
+    }
 }
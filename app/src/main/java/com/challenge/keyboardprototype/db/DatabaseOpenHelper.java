@@ -7,61 +7,110 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
 /**
- * Builds the schema for the KeyboardPrototype app.
+ * Builds the schema for the KeyboardPrototype app by applying every {@link Migration} in order,
+ * and opens the database with write-ahead logging so that reads run alongside trial writes.
  *
  * Created by lpayne on 2016-10-04.
  */
 class DatabaseOpenHelper extends SQLiteOpenHelper {
     private static final String TAG = "KB-DBOpen";
 
-    private static final int VERSION = 1;
     private static final String DATABASE_NAME = "keyboard_prototype";
 
-    private static final String[] SCHEMA_V1 = {
-            "CREATE TABLE dictionary (" +
-                    "word TEXT PRIMARY KEY, " +
-                    "frequency INTEGER NOT NULL)",
-            "CREATE TABLE session (" +
-                    "session_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "participant_id TEXT NOT NULL, " +
-                    "start_ts INTEGER, " +
-                    "keyboard_type_order TEXT NOT NULL, " +
-                    "status TEXT NOT NULL)",
-            "CREATE TABLE trial (" +
-                    "trial_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "session_id INTEGER NOT NULL, " +
-                    "keyboard_type TEXT NOT NULL, " +
-                    "target_word TEXT NOT NULL, " +
-                    "entered_word TEXT, " +
-                    "entry_method TEXT, " +
-                    "start_ts INTEGER, " +
-                    "end_ts INTEGER)",
-            "CREATE INDEX ix_session_trial ON trial (session_id ASC)",
-            "CREATE INDEX ix_dictionary ON dictionary (word ASC, frequency DESC)"
+    // Every change to the schema is appended here with the next version number, and never edited
+    // once released
+    private static final Migration[] MIGRATIONS = {
+            new Migration(1, "dictionary, sessions and trials",
+                "CREATE TABLE dictionary (" +
+                        "word TEXT PRIMARY KEY, " +
+                        "frequency INTEGER NOT NULL)",
+                "CREATE TABLE session (" +
+                        "session_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "participant_id TEXT NOT NULL, " +
+                        "start_ts INTEGER, " +
+                        "keyboard_type_order TEXT NOT NULL, " +
+                        "status TEXT NOT NULL)",
+                "CREATE TABLE trial (" +
+                        "trial_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "session_id INTEGER NOT NULL, " +
+                        "keyboard_type TEXT NOT NULL, " +
+                        "target_word TEXT NOT NULL, " +
+                        "entered_word TEXT, " +
+                        "entry_method TEXT, " +
+                        "start_ts INTEGER, " +
+                        "end_ts INTEGER)",
+                "CREATE INDEX ix_session_trial ON trial (session_id ASC)",
+                "CREATE INDEX ix_dictionary ON dictionary (word ASC, frequency DESC)"),
+            new Migration(2, "key signature index",
+                // Key sequence of every dictionary word for each keyboard type, one character per key
+                "CREATE TABLE dictionary_signature (" +
+                        "layout TEXT NOT NULL, " +
+                        "signature TEXT NOT NULL, " +
+                        "frequency INTEGER NOT NULL, " +
+                        "word TEXT NOT NULL)",
+                "CREATE INDEX ix_dictionary_signature ON dictionary_signature " +
+                        "(layout ASC, signature ASC, frequency DESC)",
+                // Keyboard types whose signatures are up to date, with the keys they were computed for
+                "CREATE TABLE signature_layout (" +
+                        "layout TEXT PRIMARY KEY, " +
+                        "keys TEXT NOT NULL, " +
+                        "word_count INTEGER NOT NULL)"),
+            new Migration(3, "keystrokes",
+                // Every key press of a trial, timed with the monotonic clock in nanoseconds
+                "CREATE TABLE keystroke (" +
+                        "keystroke_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "trial_id INTEGER NOT NULL, " +
+                        "keyboard_type TEXT NOT NULL, " +
+                        "key_index INTEGER NOT NULL, " +
+                        "key_count INTEGER NOT NULL, " +
+                        "suggestion_count INTEGER NOT NULL, " +
+                        "press_ns INTEGER NOT NULL)",
+                "CREATE INDEX ix_trial_keystroke ON keystroke (trial_id ASC)"),
+            new Migration(4, "keystroke touch points",
+                // Where the key was touched, in pixels from the top left of the keyboard, or null
+                "ALTER TABLE keystroke ADD COLUMN touch_x REAL",
+                "ALTER TABLE keystroke ADD COLUMN touch_y REAL")
     };
 
+    private static final int VERSION = MIGRATIONS[MIGRATIONS.length - 1].getVersion();
+
     DatabaseOpenHelper(Context context) {
         super(context, DATABASE_NAME, null, VERSION);
-    }
-
-    private void execStatements(SQLiteDatabase db, String[] statements) {
-        for (String statement : statements) {
-            db.execSQL(statement);
-        }
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        try {
-            execStatements(db, SCHEMA_V1);
-        } catch (SQLException e) {
-            Log.e(TAG, "Error creating database schema", e);
-            throw e;
-        }
+        migrate(db, 0);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        migrate(db, oldVersion);
+    }
 
+    /**
+     * Applies every migration after {@code fromVersion}. The open helper runs this inside one
+     * transaction, so a failed step leaves the database at its old version.
+     */
+    private void migrate(SQLiteDatabase db, int fromVersion) {
+        int version = fromVersion;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.getVersion() <= fromVersion) {
+                continue;
+            }
+            if (migration.getVersion() != version + 1) {
+                throw new IllegalStateException("Migrations out of order at " + migration);
+            }
+
+            try {
+                migration.apply(db);
+            } catch (SQLException e) {
+                Log.e(TAG, "Error migrating database schema to " + migration, e);
+                throw e;
+            }
+            version = migration.getVersion();
+            Log.i(TAG, "Migrated database schema to " + migration);
+        }
     }
 }
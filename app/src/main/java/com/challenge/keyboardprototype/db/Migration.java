@@ -0,0 +1,45 @@
+package com.challenge.keyboardprototype.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * One step of the schema history, taking the database from the previous version to
+ * {@link #getVersion}.
+ *
+ * Steps that only change the schema are a list of statements. Steps that also need to move data
+ * can override {@link #apply}.
+ */
+class Migration {
+    private final int m_version;
+    private final String m_description;
+    private final String[] m_statements;
+
+    Migration(int version, String description, String... statements) {
+        m_version = version;
+        m_description = description;
+        m_statements = statements;
+    }
+
+    int getVersion() {
+        return m_version;
+    }
+
+    String getDescription() {
+        return m_description;
+    }
+
+    /**
+     * Runs inside the transaction that {@link android.database.sqlite.SQLiteOpenHelper} opens
+     * for creating or upgrading the database.
+     */
+    void apply(SQLiteDatabase db) {
+        for (String statement : m_statements) {
+            db.execSQL(statement);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "v" + m_version + " (" + m_description + ")";
+    }
+}
@@ -0,0 +1,84 @@
+package com.challenge.keyboardprototype.db;
+
+import com.challenge.keyboardprototype.dictionary.KeyLayout;
+import com.challenge.keyboardprototype.dictionary.SuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.SuggestionSession;
+import com.challenge.keyboardprototype.model.KeyboardType;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Suggests words by querying the signature index of the dictionary table for every key.
+ *
+ * Slower than the in-memory engines but needs almost no heap, so it serves dictionaries too
+ * large to index in memory.
+ */
+public class SqliteSuggestionEngine implements SuggestionEngine {
+    private final Database m_db;
+
+    public SqliteSuggestionEngine(Database db) {
+        m_db = db;
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public SuggestionSession newSession(KeyLayout layout) {
+        return new Session(KeyboardType.fromKeyLayout(layout));
+    }
+
+    @Override
+    public long getHeapUsage() {
+        return 0;
+    }
+
+    private class Session implements SuggestionSession {
+        private final KeyboardType m_keyboardType;
+        private int[] m_keys = new int[16];
+        private int m_keyCount;
+
+        Session(KeyboardType keyboardType) {
+            m_keyboardType = keyboardType;
+        }
+
+        @Override
+        public int getKeyCount() {
+            return m_keyCount;
+        }
+
+        @Override
+        public int pressKey(int keyIndex) {
+            if (m_keyCount == m_keys.length) {
+                m_keys = Arrays.copyOf(m_keys, m_keys.length * 2);
+            }
+            m_keys[m_keyCount++] = keyIndex;
+            return getCandidateCount();
+        }
+
+        @Override
+        public void removeLastKey() {
+            if (m_keyCount > 0) {
+                --m_keyCount;
+            }
+        }
+
+        @Override
+        public void reset() {
+            m_keyCount = 0;
+        }
+
+        @Override
+        public int getCandidateCount() {
+            return m_db.getSuggestedWordCount(m_keyboardType, m_keys, m_keyCount);
+        }
+
+        @Override
+        public List<String> getSuggestedWords(int numWords) {
+            return m_db.getSuggestedWords(m_keyboardType, m_keys, m_keyCount, numWords);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.challenge.keyboardprototype.db;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.AsyncTask;
+import android.util.Log;
+import com.challenge.keyboardprototype.KeyboardApp;
+import com.challenge.keyboardprototype.KeyboardMetrics;
+import com.challenge.keyboardprototype.dictionary.ArrayLexicon;
+import com.challenge.keyboardprototype.dictionary.CachingSuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.DictionaryFile;
+import com.challenge.keyboardprototype.dictionary.FallbackSuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.KeyTrie;
+import com.challenge.keyboardprototype.dictionary.Lexicon;
+import com.challenge.keyboardprototype.dictionary.SuccinctSuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.SuccinctTrie;
+import com.challenge.keyboardprototype.dictionary.SuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.TrieSuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.WordPrefetcher;
+import com.challenge.keyboardprototype.dictionary.WordSampler;
+import com.challenge.keyboardprototype.metrics.MetricsRegistry;
+import com.challenge.keyboardprototype.model.KeyboardType;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The dictionary and the engine that answers suggestion queries from it.
+ *
+ * The dictionary is normally memory mapped from the {@code dictionary.bin} asset compiled at
+ * build time, which already contains a {@link KeyTrie} for each keyboard type. If the asset is
+ * missing, the words are read from the dictionary table instead. Tries are then only built in
+ * memory when they are expected to fit comfortably in the heap. Larger dictionaries are held in a
+ * {@link SuccinctTrie}, and suggestions are only queried from the table if even that fails.
+ *
+ * Whichever engine is chosen sits behind a {@link CachingSuggestionEngine}, which is warmed with
+ * the prefixes of the most frequent words when a session starts.
+ */
+public class SuggestionIndex {
+    private static final String TAG = "KB-Suggest";
+    private static final String DICTIONARY_ASSET = "dictionary.bin";
+    private static final int PREFETCHED_TARGET_WORDS = 8;
+    // Share of the free heap that tries built at runtime may be expected to use
+    private static final double TRIE_HEAP_SHARE = 0.5;
+    private static final int CACHED_KEY_SEQUENCES = 2048;
+    // Number of most frequent words whose prefixes are cached when a session starts
+    private static final int WARM_WORDS = 100;
+
+    private final Lexicon m_lexicon;
+    private final DictionaryFile m_dictionaryFile;
+    private final CachingSuggestionEngine m_engine;
+    private final int m_maxSuggestions;
+    private final List<String> m_commonWords;
+    private final WordPrefetcher m_targetWords;
+
+    private SuggestionIndex(Lexicon lexicon, DictionaryFile dictionaryFile, SuggestionEngine engine,
+                            int maxSuggestions, WordSampler.Mode targetWordSampling) {
+        KeyboardMetrics metrics = KeyboardApp.getMetrics();
+        m_lexicon = lexicon;
+        m_dictionaryFile = dictionaryFile;
+        m_engine = new CachingSuggestionEngine(engine, CACHED_KEY_SEQUENCES,
+                metrics.getSuggestionCacheHits(), metrics.getSuggestionCacheMisses());
+        m_maxSuggestions = maxSuggestions;
+        m_commonWords = findMostFrequent(lexicon, WARM_WORDS);
+        m_targetWords = new WordPrefetcher(new WordSampler(lexicon, targetWordSampling),
+                PREFETCHED_TARGET_WORDS, AsyncTask.THREAD_POOL_EXECUTOR);
+
+        MetricsRegistry registry = metrics.getRegistry();
+        registry.registerGauge("dictionary.engine_heap_bytes", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return m_engine.getHeapUsage();
+            }
+        });
+        registry.registerGauge("suggest.cache_entries", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return m_engine.size();
+            }
+        });
+    }
+
+    private static List<String> findMostFrequent(final Lexicon lexicon, int numWords) {
+        PriorityQueue<Integer> best = new PriorityQueue<>(numWords + 1, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return Integer.compare(lexicon.getFrequency(lhs), lexicon.getFrequency(rhs));
+            }
+        });
+        for (int i = 0; i < lexicon.size(); ++i) {
+            if (best.size() == numWords && lexicon.getFrequency(i) <= lexicon.getFrequency(best.peek())) {
+                continue;
+            }
+            best.add(i);
+            if (best.size() > numWords) {
+                best.poll();
+            }
+        }
+
+        List<String> words = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            words.add(lexicon.getWord(best.poll()));
+        }
+        Collections.reverse(words);
+        return words;
+    }
+
+    /**
+     * @param maxSuggestions the most suggestions that will be requested at once, which is the
+     *                       number of best words stored at every trie node
+     * @param targetWordSampling how {@link #getRandomWord} picks words
+     */
+    public static SuggestionIndex load(Context context, Database db, int maxSuggestions,
+                                       WordSampler.Mode targetWordSampling) {
+        long start = System.currentTimeMillis();
+        SuggestionIndex index;
+        try {
+            DictionaryFile dictionaryFile = mapAsset(context);
+            // The prebuilt tries are mapped rather than loaded, and the table may not be populated
+            SuggestionEngine engine = new TrieSuggestionEngine(dictionaryFile.getLexicon(), dictionaryFile,
+                    maxSuggestions);
+            index = new SuggestionIndex(dictionaryFile.getLexicon(), dictionaryFile, engine, maxSuggestions,
+                    targetWordSampling);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to map " + DICTIONARY_ASSET + ", falling back to the dictionary table.", e);
+            index = loadTable(db, maxSuggestions, targetWordSampling);
+        }
+
+        Log.i(TAG, "Loaded " + index.m_lexicon.size() + " words in " +
+                (System.currentTimeMillis() - start) + "ms, suggesting with " + index.m_engine.getName());
+        return index;
+    }
+
+    /**
+     * Reads the dictionary table and picks the engine for it. Tries are built in memory if they
+     * should fit, with the table as a fallback in case they do not after all. Otherwise a succinct
+     * trie is built if it should fit, which then also replaces the words read from the table.
+     */
+    private static SuggestionIndex loadTable(Database db, int maxSuggestions, WordSampler.Mode targetWordSampling) {
+        ArrayLexicon lexicon = db.loadLexicon();
+        SuggestionEngine sqliteEngine = new SqliteSuggestionEngine(db);
+
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        long trieEstimate = (long) lexicon.size() * TrieSuggestionEngine.ESTIMATED_BYTES_PER_WORD *
+                KeyboardType.values().length;
+        Log.i(TAG, "Tries for " + lexicon.size() + " words need about " + trieEstimate / 1024 + "KiB of " +
+                freeHeap / 1024 + "KiB free heap");
+
+        if (trieEstimate <= freeHeap * TRIE_HEAP_SHARE) {
+            SuggestionEngine engine = new FallbackSuggestionEngine(
+                    new TrieSuggestionEngine(lexicon, null, maxSuggestions), sqliteEngine);
+            return new SuggestionIndex(lexicon, null, engine, maxSuggestions, targetWordSampling);
+        }
+
+        long succinctEstimate = (long) lexicon.size() * SuccinctSuggestionEngine.ESTIMATED_BYTES_PER_WORD;
+        if (succinctEstimate > freeHeap * TRIE_HEAP_SHARE) {
+            return new SuggestionIndex(lexicon, null, sqliteEngine, maxSuggestions, targetWordSampling);
+        }
+        try {
+            SuccinctTrie trie = SuccinctTrie.build(lexicon.sorted());
+            return new SuggestionIndex(trie, null, new SuccinctSuggestionEngine(trie), maxSuggestions,
+                    targetWordSampling);
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "Out of memory building the succinct trie, suggesting from the dictionary table.");
+            return new SuggestionIndex(lexicon, null, sqliteEngine, maxSuggestions, targetWordSampling);
+        }
+    }
+
+    private static DictionaryFile mapAsset(Context context) throws IOException {
+        AssetFileDescriptor fd = context.getAssets().openFd(DICTIONARY_ASSET);
+        FileInputStream stream = fd.createInputStream();
+        try {
+            // The mapping stays valid after the stream is closed
+            return DictionaryFile.read(stream.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength()));
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * @return true if the dictionary came from the prebuilt asset rather than the dictionary table
+     */
+    public boolean isPrebuilt() {
+        return m_dictionaryFile != null;
+    }
+
+    public SuggestionEngine getEngine() {
+        return m_engine;
+    }
+
+    /**
+     * Caches the suggestions for the prefixes of the most frequent words on each of the given
+     * keyboards. Must not be called from the main thread.
+     */
+    public void warmCache(List<KeyboardType> keyboardTypes) {
+        long start = System.currentTimeMillis();
+        for (KeyboardType keyboardType : keyboardTypes) {
+            m_engine.warm(keyboardType.getKeyLayout(), m_commonWords, m_maxSuggestions);
+        }
+        Log.d(TAG, "Warmed suggestion cache to " + m_engine.size() + " entries in " +
+                (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Drops all cached suggestions. Sessions created before this keep working on the old dictionary.
+     */
+    public void invalidateCache() {
+        m_engine.invalidate();
+    }
+
+    /**
+     * @return a random word from a queue refilled in the background, or null if the dictionary
+     *         is empty
+     */
+    public String getRandomWord() {
+        return m_targetWords.next();
+    }
+}
@@ -0,0 +1,183 @@
+package com.challenge.keyboardprototype.db;
+
+import android.content.ContentValues;
+import android.os.Handler;
+import android.util.Log;
+import com.challenge.keyboardprototype.KeyboardApp;
+import com.challenge.keyboardprototype.KeyboardMetrics;
+import com.challenge.keyboardprototype.events.KeystrokeBuffer;
+import com.challenge.keyboardprototype.model.KeyboardType;
+import com.challenge.keyboardprototype.model.Session;
+import com.challenge.keyboardprototype.model.Trial;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Queues session and trial updates and writes them to the database on the
+ * {@link AsyncDatabase} writer thread.
+ *
+ * Each update captures the full stored state of its session or trial when it is queued, so only
+ * the latest update per row needs to be written. Queued updates are written together in one
+ * transaction at most {@link #FLUSH_INTERVAL_MS} after the first of them, or as soon as
+ * {@link #flush} is called.
+ *
+ * Key presses are recorded into a preallocated {@link KeystrokeBuffer} and drained to the
+ * keystroke table as part of the same batches.
+ */
+public class WriteBehindJournal {
+    private static final String TAG = "KB-Journal";
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    private static final int KEYSTROKE_CAPACITY = 1024;
+    // Drain early once the buffer is this full, in case no other update comes along
+    private static final int KEYSTROKE_FLUSH_THRESHOLD = KEYSTROKE_CAPACITY / 2;
+
+    private final AsyncDatabase m_db;
+    private final Handler m_handler;
+    private final KeystrokeBuffer m_keystrokes = new KeystrokeBuffer(KEYSTROKE_CAPACITY);
+    private long m_reportedDroppedKeystrokes;
+
+    private final Object m_lock = new Object();
+    private Map<Long, ContentValues> m_pendingSessions = new LinkedHashMap<>();
+    private Map<Long, ContentValues> m_pendingTrials = new LinkedHashMap<>();
+    private boolean m_flushScheduled;
+
+    private final Runnable m_flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            writePending();
+        }
+    };
+
+    public WriteBehindJournal(AsyncDatabase db) {
+        m_db = db;
+        m_handler = db.getWriteHandler();
+    }
+
+    public void updateSession(Session session) {
+        ContentValues values = Database.getSessionValues(session);
+        synchronized (m_lock) {
+            m_pendingSessions.put(session.getSessionId(), values);
+            scheduleFlush();
+        }
+    }
+
+    public void updateTrial(Trial trial) {
+        ContentValues values = Database.getTrialValues(trial);
+        synchronized (m_lock) {
+            m_pendingTrials.put(trial.getTrialId(), values);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Queues a key press without allocating or blocking. Must only be called from one thread.
+     *
+     * @param timestampNanos the time of the key press from {@link android.os.SystemClock#elapsedRealtimeNanos}
+     * @param touchX where the key was touched, in pixels from the left of the keyboard
+     * @param touchY where the key was touched, in pixels from the top of the keyboard
+     * @param keyCount the number of keys pressed in the trial, including this one
+     * @param suggestionCount the number of dictionary words matching the keys pressed so far
+     */
+    public void recordKeystroke(long trialId, long timestampNanos, KeyboardType keyboardType, int keyIndex,
+                                float touchX, float touchY, int keyCount, int suggestionCount) {
+        m_keystrokes.record(trialId, timestampNanos, keyboardType.getDbChar(), keyIndex, touchX, touchY,
+                keyCount, suggestionCount);
+        if (m_keystrokes.size() == KEYSTROKE_FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all queued updates as soon as possible without waiting for them.
+     */
+    public void flush() {
+        m_handler.removeCallbacks(m_flushRunnable);
+        m_handler.post(m_flushRunnable);
+    }
+
+    /**
+     * Writes all queued updates and waits for them to be written. Must not be called from the main
+     * thread.
+     */
+    public void flushNow() {
+        try {
+            m_db.write(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    writePending();
+                    return null;
+                }
+            }, null).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the journal.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Journal write failed.", e.getCause());
+        }
+    }
+
+    private void scheduleFlush() {
+        if (!m_flushScheduled) {
+            m_flushScheduled = true;
+            m_handler.postDelayed(m_flushRunnable, FLUSH_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Only runs on the writer thread, so an older batch can never land after a newer one.
+     */
+    private void writePending() {
+        final Map<Long, ContentValues> sessions;
+        final Map<Long, ContentValues> trials;
+        synchronized (m_lock) {
+            m_flushScheduled = false;
+            if (m_pendingSessions.isEmpty() && m_pendingTrials.isEmpty() && m_keystrokes.size() == 0) {
+                return;
+            }
+            sessions = m_pendingSessions;
+            trials = m_pendingTrials;
+            m_pendingSessions = new LinkedHashMap<>();
+            m_pendingTrials = new LinkedHashMap<>();
+        }
+
+        long start = System.nanoTime();
+        final Database db = m_db.getDatabase();
+        final int[] numKeystrokes = new int[1];
+        db.doInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                numKeystrokes[0] = db.insertKeystrokes(m_keystrokes);
+
+                // Rows may have been deleted since the update was queued, which is not fatal
+                for (Map.Entry<Long, ContentValues> entry : sessions.entrySet()) {
+                    try {
+                        db.updateSession(entry.getKey(), entry.getValue());
+                    } catch (IllegalArgumentException e) {
+                        Log.w(TAG, "Dropped session update: " + e.getMessage());
+                    }
+                }
+                for (Map.Entry<Long, ContentValues> entry : trials.entrySet()) {
+                    try {
+                        db.updateTrial(entry.getKey(), entry.getValue());
+                    } catch (IllegalArgumentException e) {
+                        Log.w(TAG, "Dropped trial update: " + e.getMessage());
+                    }
+                }
+            }
+        });
+        KeyboardMetrics metrics = KeyboardApp.getMetrics();
+        metrics.getJournalWriteLatency().recordSince(start);
+        metrics.getKeystrokesWritten().add(numKeystrokes[0]);
+        Log.d(TAG, "Wrote " + sessions.size() + " session and " + trials.size() + " trial updates and " +
+                numKeystrokes[0] + " keystrokes.");
+
+        long dropped = m_keystrokes.getDroppedCount();
+        if (dropped != m_reportedDroppedKeystrokes) {
+            Log.w(TAG, "Keystroke buffer overflowed, " + (dropped - m_reportedDroppedKeystrokes) + " keystrokes lost.");
+            m_reportedDroppedKeystrokes = dropped;
+        }
+    }
+}
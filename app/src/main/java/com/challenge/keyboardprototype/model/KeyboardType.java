@@ -1,9 +1,10 @@
 package com.challenge.keyboardprototype.model;
 
-import com.challenge.keyboardprototype.R;
+import com.challenge.keyboardprototype.dictionary.KeyLayout;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * The set of keyboards that can be tried.
@@ -11,25 +12,108 @@ import java.util.List;
  * Created by lpayne on 2016-10-05.
  */
 public enum KeyboardType {
-    QWERTY_STANDARD('S', R.layout.fragment_qwerty_standard_keyboard),
-    QWERTY_NINE_KEY('9', R.layout.fragment_qwerty_nine_keyboard),
-    QWERTY_THREE_KEY('3', R.layout.fragment_qwerty_three_keyboard),
+    QWERTY_STANDARD('S', KeyLayout.QWERTY_STANDARD, new String[][] {
+            { "Q", "W", "E", "R", "T", "Y", "U", "I", "O", "P" },
+            { "A", "S", "D", "F", "G", "H", "J", "K", "L", null },
+            { null, "Z", "X", "C", "V", "B", "N", "M", null, null } }),
+    QWERTY_NINE_KEY('9', KeyLayout.QWERTY_NINE_KEY, new String[][] {
+            { "QWE", "RTY", "UIOP" },
+            { "ASD", "FGH", "JKL" },
+            { "ZXC", "VB", "NM" } }),
+    QWERTY_THREE_KEY('3', KeyLayout.QWERTY_THREE_KEY, new String[][] {
+            { "QWE\nASD\nZXC", "RTY\nFGH\nVB", "UIOP\nJKL\nNM" } }),
     ;
 
-    private final char m_dbChar;
-    private final int m_layoutResource;
+    public static final int NO_KEY = -1;
 
-    KeyboardType(char dbChar, int layoutResource) {
+    private final char m_dbChar;
+    private final KeyLayout m_keyLayout;
+    private final int m_rowCount;
+    private final int m_columnCount;
+    // The key index in each cell of the grid, row by row, or NO_KEY for a gap
+    private final byte[] m_cells;
+    // The lines of the label of each key, by key index
+    private final String[][] m_keyLabels;
+    private final int m_maxLabelLines;
+
+    /**
+     * @param rows the label of the key in each cell of an evenly spaced grid, or null for a gap.
+     *             Every row has the same number of cells, and every key appears exactly once.
+     */
+    KeyboardType(char dbChar, KeyLayout keyLayout, String[][] rows) {
         m_dbChar = dbChar;
-        m_layoutResource = layoutResource;
+        m_keyLayout = keyLayout;
+        m_rowCount = rows.length;
+        m_columnCount = rows[0].length;
+        m_cells = new byte[m_rowCount * m_columnCount];
+        m_keyLabels = new String[keyLayout.getKeyCount()][];
+
+        int maxLabelLines = 0;
+        for (int row = 0; row < m_rowCount; ++row) {
+            if (rows[row].length != m_columnCount) {
+                throw new IllegalArgumentException("Every row must have " + m_columnCount + " cells.");
+            }
+            for (int column = 0; column < m_columnCount; ++column) {
+                String label = rows[row][column];
+                int key = label == null ? NO_KEY : keyLayout.keyIndexOf(label.charAt(0));
+                if (label != null && (key == NO_KEY ||
+                        !label.replace("\n", "").toLowerCase(Locale.ROOT).equals(keyLayout.getKeyLetters(key)))) {
+                    throw new IllegalArgumentException("No key has the letters of the label " + label + ".");
+                }
+                if (key != NO_KEY && m_keyLabels[key] != null) {
+                    throw new IllegalArgumentException("Key '" + keyLayout.getKeyLetters(key) + "' appears twice.");
+                }
+
+                m_cells[row * m_columnCount + column] = (byte) key;
+                if (key != NO_KEY) {
+                    m_keyLabels[key] = label.split("\n");
+                    maxLabelLines = Math.max(maxLabelLines, m_keyLabels[key].length);
+                }
+            }
+        }
+        for (int key = 0; key < m_keyLabels.length; ++key) {
+            if (m_keyLabels[key] == null) {
+                throw new IllegalArgumentException("Key '" + keyLayout.getKeyLetters(key) + "' has no cell.");
+            }
+        }
+        m_maxLabelLines = maxLabelLines;
     }
 
     public char getDbChar() {
         return m_dbChar;
     }
 
-    public int getLayoutResource() {
-        return m_layoutResource;
+    public KeyLayout getKeyLayout() {
+        return m_keyLayout;
+    }
+
+    public int getRowCount() {
+        return m_rowCount;
+    }
+
+    public int getColumnCount() {
+        return m_columnCount;
+    }
+
+    /**
+     * @return the {@link KeyLayout} index of the key in the given cell, or {@link #NO_KEY} for a gap
+     */
+    public int getKeyAt(int row, int column) {
+        return m_cells[row * m_columnCount + column];
+    }
+
+    /**
+     * @return the lines of the label drawn on the key at a {@link KeyLayout} index
+     */
+    public String[] getKeyLabelLines(int keyIndex) {
+        return m_keyLabels[keyIndex];
+    }
+
+    /**
+     * @return the number of lines of the tallest key label
+     */
+    public int getMaxLabelLines() {
+        return m_maxLabelLines;
     }
 
     public static KeyboardType fromDbChar(char dbChar) {
@@ -42,6 +126,16 @@ public enum KeyboardType {
         throw new IllegalArgumentException("No keyboard type found for '" + dbChar + "'");
     }
 
+    public static KeyboardType fromKeyLayout(KeyLayout keyLayout) {
+        for (KeyboardType type : values()) {
+            if (type.getKeyLayout().equals(keyLayout)) {
+                return type;
+            }
+        }
+
+        throw new IllegalArgumentException("No keyboard type found for layout " + keyLayout);
+    }
+
     public static String orderAsDbString(List<KeyboardType> keyboardOrder) {
         StringBuilder sb = new StringBuilder(keyboardOrder.size());
         for (KeyboardType type : keyboardOrder) {
@@ -1,10 +1,12 @@
 package com.challenge.keyboardprototype.model;
 
 import com.challenge.keyboardprototype.KeyboardApp;
+import com.challenge.keyboardprototype.db.AsyncDatabase;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * Stores the overall state for a series of word typing trials.
@@ -21,16 +23,17 @@ public class Session {
     private long m_startTimestamp;
     private SessionStatus m_status;
 
-    public static Session createSession(String participantId, List<KeyboardType> keyboardOrder) {
+    /**
+     * Stores a new session in the background.
+     *
+     * @param callback receives the session on the main thread once it is stored
+     */
+    public static Future<Session> createSession(String participantId, List<KeyboardType> keyboardOrder,
+                                                AsyncDatabase.Callback<Session> callback) {
         if (keyboardOrder.isEmpty()) {
             throw new IllegalArgumentException("At least one keyboard type is required.");
         }
-        long sessionId = KeyboardApp.getDatabase().insertSession(
-                participantId,
-                KeyboardType.orderAsDbString(keyboardOrder),
-                SessionStatus.CREATED.toString());
-
-        return new Session(sessionId, participantId, keyboardOrder, SessionStatus.CREATED, UNDEFINED_TIMESTAMP);
+        return KeyboardApp.getAsyncDatabase().createSession(participantId, keyboardOrder, callback);
     }
 
     public Session(long sessionId,
@@ -105,7 +108,7 @@ public class Session {
     }
 
     private void save() {
-        KeyboardApp.getDatabase().updateSession(this);
+        KeyboardApp.getJournal().updateSession(this);
     }
 
     public boolean hasStarted() {
@@ -1,6 +1,9 @@
 package com.challenge.keyboardprototype.model;
 
 import com.challenge.keyboardprototype.KeyboardApp;
+import com.challenge.keyboardprototype.db.AsyncDatabase;
+
+import java.util.concurrent.Future;
 
 /**
  * A single attempt to type a word with a keyboard.
@@ -19,10 +22,6 @@ public class Trial {
     private EntryMethod m_entryMethod;
     private String m_enteredWord;
 
-    private Trial(long trialId, long sessionId, String targetWord, KeyboardType keyboardType) {
-        this(trialId, sessionId, keyboardType, targetWord, UNDEFINED_TIMESTAMP, UNDEFINED_TIMESTAMP, null, null);
-    }
-
     public Trial(long trialId,
                  long sessionId,
                  KeyboardType keyboardType,
@@ -74,11 +73,14 @@ public class Trial {
         return m_targetWord;
     }
 
-    public static Trial createTrial(long sessionId, String targetWord, KeyboardType keyboardType) {
-        long trialId = KeyboardApp.getDatabase().insertTrial(
-                sessionId, targetWord, keyboardType.getDbChar());
-
-        return new Trial(trialId, sessionId, targetWord, keyboardType);
+    /**
+     * Stores a new trial in the background.
+     *
+     * @param callback receives the trial on the main thread once it is stored
+     */
+    public static Future<Trial> createTrial(long sessionId, String targetWord, KeyboardType keyboardType,
+                                            AsyncDatabase.Callback<Trial> callback) {
+        return KeyboardApp.getAsyncDatabase().createTrial(sessionId, targetWord, keyboardType, callback);
     }
 
     public void start() {
@@ -94,7 +96,7 @@ public class Trial {
     }
 
     public void save() {
-        KeyboardApp.getDatabase().updateTrial(this);
+        KeyboardApp.getJournal().updateTrial(this);
     }
 
     public boolean hasEnded() {
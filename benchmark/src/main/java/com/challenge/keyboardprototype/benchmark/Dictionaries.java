@@ -0,0 +1,127 @@
+package com.challenge.keyboardprototype.benchmark;
+
+import com.challenge.keyboardprototype.dictionary.ArrayLexicon;
+import com.challenge.keyboardprototype.dictionary.KeyLayout;
+import com.challenge.keyboardprototype.dictionary.Lexicon;
+import com.challenge.keyboardprototype.dictionary.WordListReader;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Dictionaries that benchmarks are parameterized by: either the word list shipped with the app,
+ * or a reproducible synthetic dictionary of a given size.
+ */
+final class Dictionaries {
+    /** Parameter value that selects the shipped word list. */
+    static final String SHIPPED = "shipped";
+    /** System property holding the path of the shipped word list. */
+    static final String DICTIONARY_PROPERTY = "keyboard.dictionary";
+
+    private static final long SEED = 0x4B42L;
+
+    // Approximate English letter frequencies, per mille, so synthetic tries have a realistic shape
+    private static final String LETTERS = "etaoinshrdlcumwfgypbvkjxqz";
+    private static final int[] LETTER_WEIGHTS = {
+            127, 91, 82, 75, 70, 67, 63, 61, 60, 43, 40, 28, 28, 24, 24, 22, 20, 20, 20, 15, 10, 8, 2, 2, 1, 1 };
+    private static final int MIN_WORD_LENGTH = 2;
+    private static final int MAX_WORD_LENGTH = 14;
+
+    private Dictionaries() {
+    }
+
+    /**
+     * @param dictionary {@link #SHIPPED} or the number of synthetic words
+     * @return the words in alphabetical order
+     */
+    static ArrayLexicon load(String dictionary) throws IOException {
+        if (SHIPPED.equals(dictionary)) {
+            String path = System.getProperty(DICTIONARY_PROPERTY);
+            if (path == null) {
+                throw new IllegalStateException("Set -D" + DICTIONARY_PROPERTY + " to the shipped word list.");
+            }
+            return readWordList(new InputStreamReader(new FileInputStream(path), "UTF-8"));
+        }
+        return synthetic(Integer.parseInt(dictionary));
+    }
+
+    static ArrayLexicon readWordList(Reader in) throws IOException {
+        ArrayLexicon.Builder builder = new ArrayLexicon.Builder();
+        WordListReader reader = new WordListReader(in);
+        try {
+            while (reader.next()) {
+                builder.add(reader.getWord(), reader.getFrequency());
+            }
+        } finally {
+            reader.close();
+        }
+        return builder.build().sorted();
+    }
+
+    /**
+     * @return the lexicon in the {@code word,frequency} format of the shipped word list
+     */
+    static String toWordList(Lexicon lexicon) {
+        StringBuilder out = new StringBuilder(lexicon.size() * 16);
+        for (int i = 0; i < lexicon.size(); ++i) {
+            out.append(lexicon.getWord(i)).append(',').append(lexicon.getFrequency(i)).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return the same {@code numWords} distinct random words on every call, with frequencies that
+     *         follow Zipf's law
+     */
+    static ArrayLexicon synthetic(int numWords) {
+        int totalWeight = 0;
+        for (int weight : LETTER_WEIGHTS) {
+            totalWeight += weight;
+        }
+
+        Random random = new Random(SEED);
+        Set<String> seen = new HashSet<>(numWords * 2);
+        ArrayLexicon.Builder builder = new ArrayLexicon.Builder();
+        char[] chars = new char[MAX_WORD_LENGTH];
+        int rank = 0;
+        while (rank < numWords) {
+            // Sum of two uniform lengths, so mid-length words are the most common
+            final int length = MIN_WORD_LENGTH +
+                    (random.nextInt(MAX_WORD_LENGTH - MIN_WORD_LENGTH + 1) +
+                     random.nextInt(MAX_WORD_LENGTH - MIN_WORD_LENGTH + 1)) / 2;
+            for (int i = 0; i < length; ++i) {
+                int pick = random.nextInt(totalWeight);
+                int letter = 0;
+                while (pick >= LETTER_WEIGHTS[letter]) {
+                    pick -= LETTER_WEIGHTS[letter++];
+                }
+                chars[i] = LETTERS.charAt(letter);
+            }
+
+            String word = new String(chars, 0, length);
+            if (seen.add(word)) {
+                ++rank;
+                builder.add(word, Math.max(1, 100000000 / rank));
+            }
+        }
+        return builder.build().sorted();
+    }
+
+    static KeyLayout layout(String name) {
+        switch (name) {
+            case "QWERTY_STANDARD":
+                return KeyLayout.QWERTY_STANDARD;
+            case "QWERTY_NINE_KEY":
+                return KeyLayout.QWERTY_NINE_KEY;
+            case "QWERTY_THREE_KEY":
+                return KeyLayout.QWERTY_THREE_KEY;
+            default:
+                throw new IllegalArgumentException("Unknown layout " + name);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.challenge.keyboardprototype.benchmark;
+
+import com.challenge.keyboardprototype.export.TrialExportWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of formatting trial data as CSV, with the file writes themselves discarded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+    private static final int TRIALS_PER_SESSION = 30;
+    private static final String[] KEYBOARD_TYPES = { "QWERTY_STANDARD", "QWERTY_NINE_KEY", "QWERTY_THREE_KEY" };
+    private static final String[] ENTRY_METHODS = { "PRIMARY_SUGGESTION_ACCEPTED", "ALTERNATE_SUGGESTION_SELECTED" };
+
+    @Param({"1000", "100000"})
+    public int trials;
+
+    private String[] m_targetWords;
+    private String[] m_enteredWords;
+    private long[] m_startTimestamps;
+    private int[] m_durations;
+
+    @Setup
+    public void setUp() {
+        String[] words = { "the", "keyboard", "prototype", "participant", "a", "suggestion" };
+        Random random = new Random(1);
+        m_targetWords = new String[trials];
+        m_enteredWords = new String[trials];
+        m_startTimestamps = new long[trials];
+        m_durations = new int[trials];
+
+        long timestamp = 1476000000000L;
+        for (int i = 0; i < trials; ++i) {
+            m_targetWords[i] = words[random.nextInt(words.length)];
+            m_enteredWords[i] = random.nextInt(10) == 0 ? words[random.nextInt(words.length)] : m_targetWords[i];
+            m_durations[i] = 500 + random.nextInt(5000);
+            m_startTimestamps[i] = timestamp;
+            timestamp += m_durations[i] + random.nextInt(1000);
+        }
+    }
+
+    @Benchmark
+    public void export() throws IOException {
+        TrialExportWriter out = new TrialExportWriter(new BufferedWriter(new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int count) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        }, 64 * 1024));
+
+        out.writeHeader();
+        for (int i = 0; i < trials; ++i) {
+            final long sessionId = i / TRIALS_PER_SESSION + 1;
+            out.writeRow(sessionId,
+                    "P" + sessionId,
+                    true,
+                    m_startTimestamps[i - i % TRIALS_PER_SESSION],
+                    "COMPLETED",
+                    i + 1,
+                    KEYBOARD_TYPES[i % KEYBOARD_TYPES.length],
+                    m_targetWords[i],
+                    m_enteredWords[i],
+                    ENTRY_METHODS[i % ENTRY_METHODS.length],
+                    m_startTimestamps[i],
+                    m_startTimestamps[i] + m_durations[i]);
+        }
+        out.close();
+    }
+}
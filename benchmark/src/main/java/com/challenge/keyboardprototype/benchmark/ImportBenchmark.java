@@ -0,0 +1,104 @@
+package com.challenge.keyboardprototype.benchmark;
+
+import com.challenge.keyboardprototype.dictionary.ArrayLexicon;
+import com.challenge.keyboardprototype.dictionary.DictionaryFile;
+import com.challenge.keyboardprototype.dictionary.KeyLayout;
+import com.challenge.keyboardprototype.dictionary.KeyTrie;
+import com.challenge.keyboardprototype.dictionary.SuccinctTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each stage of getting a word list ready for suggestions: parsing it, building the
+ * tries or the succinct trie, and writing and reading the compiled dictionary.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImportBenchmark {
+    private static final int TOP_COUNT = 12;
+    private static final KeyLayout[] LAYOUTS = {
+            KeyLayout.QWERTY_STANDARD,
+            KeyLayout.QWERTY_NINE_KEY,
+            KeyLayout.QWERTY_THREE_KEY,
+    };
+
+    @Param({Dictionaries.SHIPPED, "100000", "1000000"})
+    public String dictionary;
+
+    private String m_wordList;
+    private ArrayLexicon m_lexicon;
+    private List<KeyTrie> m_tries;
+    private ByteBuffer m_compiled;
+
+    @Setup
+    public void setUp() throws IOException {
+        m_lexicon = Dictionaries.load(dictionary);
+        m_wordList = Dictionaries.toWordList(m_lexicon);
+        m_tries = buildTries();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DictionaryFile.write(m_lexicon, m_tries, out);
+        m_compiled = ByteBuffer.allocateDirect(out.size());
+        m_compiled.put(out.toByteArray()).flip();
+    }
+
+    @Benchmark
+    public ArrayLexicon parseWordList() throws IOException {
+        return Dictionaries.readWordList(new StringReader(m_wordList));
+    }
+
+    @Benchmark
+    public List<KeyTrie> buildTries() {
+        List<KeyTrie> tries = new ArrayList<>(LAYOUTS.length);
+        for (KeyLayout layout : LAYOUTS) {
+            tries.add(KeyTrie.build(m_lexicon, layout, TOP_COUNT));
+        }
+        return tries;
+    }
+
+    @Benchmark
+    public SuccinctTrie buildSuccinctTrie() {
+        return SuccinctTrie.build(m_lexicon);
+    }
+
+    @Benchmark
+    public void writeDictionaryFile() throws IOException {
+        DictionaryFile.write(m_lexicon, m_tries, new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public DictionaryFile readDictionaryFile() throws IOException {
+        return DictionaryFile.read(m_compiled);
+    }
+}
@@ -0,0 +1,347 @@
+package com.challenge.keyboardprototype.benchmark;
+
+import com.challenge.keyboardprototype.dictionary.ArrayLexicon;
+import com.challenge.keyboardprototype.dictionary.CachingSuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.KeyLayout;
+import com.challenge.keyboardprototype.dictionary.SuccinctSuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.SuccinctTrie;
+import com.challenge.keyboardprototype.dictionary.SuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.SuggestionSession;
+import com.challenge.keyboardprototype.dictionary.TrieSuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.WordSampler;
+import com.challenge.keyboardprototype.events.KeystrokeBuffer;
+import com.challenge.keyboardprototype.export.TrialExportWriter;
+import com.challenge.keyboardprototype.metrics.Counter;
+import com.challenge.keyboardprototype.metrics.LatencyHistogram;
+import com.challenge.keyboardprototype.metrics.MetricsRegistry;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs synthetic participants through the trial flow on a plain JVM, to see how the suggestion
+ * engine and trial storage hold up over thousands of sessions.
+ *
+ * Each participant works through one session the way {@code TrialActivity} runs it: every layout
+ * in the session's keyboard order, a number of trials per layout, and a target word drawn with
+ * {@link WordSampler}. Target words are typed key by key through a {@link SuggestionEngine}
+ * session, hitting a random wrong key at the configured error rate and waiting a random delay
+ * between keys. A trial ends as soon as the target word is suggested, or with the autocomplete
+ * word once every key has been typed, since the keyboard has no way to delete a key.
+ *
+ * The session and trial tables need Android, so trials and key presses are handed to a single
+ * writer thread instead, like the app's journal: each participant records its key presses into a
+ * {@link KeystrokeBuffer}, and the writer drains it and streams every trial through
+ * {@link TrialExportWriter} after each trial.
+ *
+ * Options are given as {@code name=value} arguments, see {@link Options}.
+ */
+public final class ParticipantSimulator {
+    // Keep in step with TrialActivity.MAX_SUGGESTED_WORDS and SuggestionIndex
+    private static final int MAX_SUGGESTIONS = 12;
+    private static final int CACHED_KEY_SEQUENCES = 2048;
+    private static final int KEYSTROKE_CAPACITY = 256;
+
+    // The app's keyboard types, in their default order
+    private static final String[] LAYOUT_NAMES = { "QWERTY_STANDARD", "QWERTY_NINE_KEY", "QWERTY_THREE_KEY" };
+    private static final char[] LAYOUT_DB_CHARS = { 'S', '9', '3' };
+
+    /**
+     * Simulation settings, each overridable with a {@code name=value} argument of the field name.
+     */
+    static final class Options {
+        String dictionary = Dictionaries.SHIPPED;
+        String engine = "trie";
+        boolean cache = true;
+        int participants = 100;
+        int threads = 4;
+        int trialsPerKeyboard = 2;
+        double errorRate = 0.05;
+        double keyDelayMs = 0;
+        WordSampler.Mode sampling = WordSampler.Mode.UNIFORM;
+        String output = "none";
+        long seed = 1;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                final int split = arg.indexOf('=');
+                if (split < 0) {
+                    throw new IllegalArgumentException("Expected name=value: " + arg);
+                }
+                options.set(arg.substring(0, split), arg.substring(split + 1));
+            }
+            return options;
+        }
+
+        private void set(String name, String value) {
+            switch (name) {
+                case "dictionary": dictionary = value; break;
+                case "engine": engine = value; break;
+                case "cache": cache = Boolean.parseBoolean(value); break;
+                case "participants": participants = Integer.parseInt(value); break;
+                case "threads": threads = Integer.parseInt(value); break;
+                case "trialsPerKeyboard": trialsPerKeyboard = Integer.parseInt(value); break;
+                case "errorRate": errorRate = Double.parseDouble(value); break;
+                case "keyDelayMs": keyDelayMs = Double.parseDouble(value); break;
+                case "sampling": sampling = WordSampler.Mode.valueOf(value); break;
+                case "output": output = value; break;
+                case "seed": seed = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "dictionary=" + dictionary + " engine=" + engine + " cache=" + cache +
+                    " participants=" + participants + " threads=" + threads +
+                    " trialsPerKeyboard=" + trialsPerKeyboard + " errorRate=" + errorRate +
+                    " keyDelayMs=" + keyDelayMs + " sampling=" + sampling + " output=" + output +
+                    " seed=" + seed;
+        }
+    }
+
+    private final Options m_options;
+    private final MetricsRegistry m_metrics = new MetricsRegistry();
+    private final SuggestionEngine m_engine;
+    private final WordSampler m_sampler;
+    private final KeyLayout[] m_layouts = new KeyLayout[LAYOUT_NAMES.length];
+    private final AtomicLong m_nextSessionId = new AtomicLong(1);
+    private final AtomicLong m_nextTrialId = new AtomicLong(1);
+
+    // Only used by the writer thread
+    private final ExecutorService m_writer = Executors.newSingleThreadExecutor();
+    private final TrialExportWriter m_out;
+
+    private final Counter m_keys = m_metrics.counter("sim.keys");
+    private final Counter m_wrongKeys = m_metrics.counter("sim.wrong_keys");
+    private final Counter m_trials = m_metrics.counter("sim.trials");
+    private final Counter m_correctTrials = m_metrics.counter("sim.trials_correct");
+    private final Counter m_keystrokesWritten = m_metrics.counter("sim.keystrokes_written");
+    private final Counter m_keystrokesDropped = m_metrics.counter("sim.keystrokes_dropped");
+    private final LatencyHistogram m_trialLatency = m_metrics.histogram("sim.trial_latency");
+    private final LatencyHistogram m_writeLatency = m_metrics.histogram("sim.write_latency");
+    private final LatencyHistogram[] m_keyLatency = new LatencyHistogram[LAYOUT_NAMES.length];
+
+    ParticipantSimulator(Options options, ArrayLexicon lexicon, Writer out) {
+        m_options = options;
+        m_sampler = new WordSampler(lexicon, options.sampling);
+        for (int i = 0; i < LAYOUT_NAMES.length; ++i) {
+            m_layouts[i] = Dictionaries.layout(LAYOUT_NAMES[i]);
+            m_keyLatency[i] = m_metrics.histogram("sim.key_latency", LAYOUT_NAMES[i]);
+        }
+
+        SuggestionEngine engine;
+        if ("succinct".equals(options.engine)) {
+            engine = new SuccinctSuggestionEngine(SuccinctTrie.build(lexicon));
+        } else if ("trie".equals(options.engine)) {
+            engine = new TrieSuggestionEngine(lexicon, null, MAX_SUGGESTIONS);
+        } else {
+            throw new IllegalArgumentException("Unknown engine " + options.engine);
+        }
+        if (options.cache) {
+            engine = new CachingSuggestionEngine(engine, CACHED_KEY_SEQUENCES,
+                    m_metrics.counter("suggest.cache_hits"), m_metrics.counter("suggest.cache_misses"));
+        }
+        m_engine = engine;
+
+        m_out = new TrialExportWriter(out);
+        m_out.writeHeader();
+    }
+
+    /**
+     * Runs every participant and waits for all of their trials to be written.
+     */
+    void run() throws InterruptedException, ExecutionException {
+        ExecutorService participants = Executors.newFixedThreadPool(m_options.threads);
+        List<Future<?>> results = new ArrayList<>(m_options.participants);
+        for (int i = 0; i < m_options.participants; ++i) {
+            final int participant = i;
+            results.add(participants.submit(new Runnable() {
+                @Override
+                public void run() {
+                    runSession(participant);
+                }
+            }));
+        }
+        try {
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            participants.shutdownNow();
+        }
+
+        m_writer.shutdown();
+        m_writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    private void runSession(int participant) {
+        final Random random = new Random(m_options.seed * 31 + participant);
+        final String participantId = "sim-" + participant;
+        final long sessionId = m_nextSessionId.getAndIncrement();
+        final long sessionStart = System.currentTimeMillis();
+        final KeystrokeBuffer keystrokes = new KeystrokeBuffer(KEYSTROKE_CAPACITY);
+
+        // Each completed session moves the next one on to the following keyboard order
+        for (int i = 0; i < m_layouts.length; ++i) {
+            final int layout = (participant + i) % m_layouts.length;
+            for (int trial = 0; trial < m_options.trialsPerKeyboard; ++trial) {
+                runTrial(random, participantId, sessionId, sessionStart, layout, keystrokes);
+            }
+        }
+    }
+
+    private void runTrial(Random random, final String participantId, final long sessionId, final long sessionStart,
+                          final int layout, final KeystrokeBuffer keystrokes) {
+        final KeyLayout keyLayout = m_layouts[layout];
+        final String targetWord = m_sampler.sample(random);
+        final long trialId = m_nextTrialId.getAndIncrement();
+        final long trialStart = System.currentTimeMillis();
+        final long trialStartNanos = System.nanoTime();
+
+        final byte[] signature = keyLayout.getSignature(targetWord);
+        final SuggestionSession session = m_engine.newSession(keyLayout);
+        String enteredWord = null;
+        String entryMethod = "PRIMARY_SUGGESTION_ACCEPTED";
+
+        for (int i = 0; i < signature.length; ++i) {
+            waitBetweenKeys(random);
+
+            int key = signature[i];
+            if (random.nextDouble() < m_options.errorRate) {
+                key = (key + 1 + random.nextInt(keyLayout.getKeyCount() - 1)) % keyLayout.getKeyCount();
+                m_wrongKeys.increment();
+            }
+
+            final long start = System.nanoTime();
+            final int candidateCount = session.pressKey(key);
+            final List<String> words = session.getSuggestedWords(MAX_SUGGESTIONS);
+            m_keyLatency[layout].recordSince(start);
+            m_keys.increment();
+            // Simulated presses have no touch point
+            if (!keystrokes.record(trialId, start, LAYOUT_DB_CHARS[layout], key, Float.NaN, Float.NaN,
+                    session.getKeyCount(), candidateCount)) {
+                m_keystrokesDropped.increment();
+            }
+
+            // The best match is last and is offered as the autocomplete word
+            enteredWord = words.isEmpty() ? null : words.get(words.size() - 1);
+            if (targetWord.equals(enteredWord)) {
+                break;
+            }
+            if (words.contains(targetWord)) {
+                enteredWord = targetWord;
+                entryMethod = "ALTERNATE_SUGGESTION_SELECTED";
+                break;
+            }
+        }
+
+        m_trialLatency.recordSince(trialStartNanos);
+        m_trials.increment();
+        if (targetWord.equals(enteredWord)) {
+            m_correctTrials.increment();
+        }
+
+        final long trialEnd = System.currentTimeMillis();
+        final String enteredWordFinal = enteredWord;
+        final String entryMethodFinal = entryMethod;
+        final long queued = System.nanoTime();
+        m_writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                m_keystrokesWritten.add(keystrokes.drainTo(new KeystrokeBuffer.Sink() {
+                    @Override
+                    public void onKeystroke(long trialId, long timestampNanos, char keyboardType, int keyIndex,
+                                            float touchX, float touchY, int keyCount, int suggestionCount) {
+                        // Stands in for the keystroke insert
+                    }
+                }));
+                m_out.writeRow(sessionId, participantId, true, sessionStart, "STARTED", trialId,
+                        LAYOUT_NAMES[layout], targetWord, enteredWordFinal, entryMethodFinal,
+                        trialStart, trialEnd);
+                m_writeLatency.recordSince(queued);
+            }
+        });
+    }
+
+    private void waitBetweenKeys(Random random) {
+        if (m_options.keyDelayMs <= 0) {
+            return;
+        }
+        // Exponentially distributed around the mean, as independent key presses would be
+        final double delayMs = -m_options.keyDelayMs * Math.log(1 - random.nextDouble());
+        try {
+            TimeUnit.MICROSECONDS.sleep((long) (delayMs * 1000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted between keys.", e);
+        }
+    }
+
+    /**
+     * Writes throughput and then every metric to {@code out}.
+     */
+    void report(long elapsedNanos, Writer out) throws IOException {
+        final double seconds = elapsedNanos / 1e9;
+        out.write(String.format("elapsed %.2fs, %.0f sessions/s, %.0f trials/s, %.0f keys/s, %.1f%% trials correct%n",
+                seconds,
+                m_options.participants / seconds,
+                m_trials.get() / seconds,
+                m_keys.get() / seconds,
+                m_trials.get() == 0 ? 0 : 100.0 * m_correctTrials.get() / m_trials.get()));
+        m_metrics.writeTo(out);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        System.out.println(options);
+
+        long start = System.nanoTime();
+        ArrayLexicon lexicon = Dictionaries.load(options.dictionary);
+        Writer out = "none".equals(options.output) ?
+                new DiscardingWriter() :
+                new BufferedWriter(new OutputStreamWriter(new FileOutputStream(options.output), "UTF-8"));
+        ParticipantSimulator simulator = new ParticipantSimulator(options, lexicon, out);
+        System.out.println("Loaded " + lexicon.size() + " words into " + simulator.m_engine.getName() + " in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+
+        start = System.nanoTime();
+        try {
+            simulator.run();
+        } finally {
+            simulator.m_out.close();
+        }
+        Writer report = new OutputStreamWriter(System.out, "UTF-8");
+        simulator.report(System.nanoTime() - start, report);
+    }
+
+    /**
+     * Formats rows without keeping them, when only the cost of writing is of interest.
+     */
+    private static final class DiscardingWriter extends Writer {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.challenge.keyboardprototype.benchmark;
+
+import com.challenge.keyboardprototype.dictionary.Lexicon;
+import com.challenge.keyboardprototype.dictionary.WordSampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of picking a trial's target word, and of preparing the sampler when the dictionary loads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomWordBenchmark {
+    @Param({Dictionaries.SHIPPED, "100000", "1000000"})
+    public String dictionary;
+
+    @Param({"UNIFORM", "FREQUENCY_WEIGHTED"})
+    public WordSampler.Mode mode;
+
+    private final Random m_random = new Random(1);
+    private Lexicon m_lexicon;
+    private WordSampler m_sampler;
+
+    @Setup
+    public void setUp() throws IOException {
+        m_lexicon = Dictionaries.load(dictionary);
+        m_sampler = new WordSampler(m_lexicon, mode);
+    }
+
+    @Benchmark
+    public String sample() {
+        return m_sampler.sample(m_random);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public WordSampler createSampler() {
+        return new WordSampler(m_lexicon, mode);
+    }
+}
@@ -0,0 +1,100 @@
+package com.challenge.keyboardprototype.benchmark;
+
+import com.challenge.keyboardprototype.dictionary.ArrayLexicon;
+import com.challenge.keyboardprototype.dictionary.KeyLayout;
+import com.challenge.keyboardprototype.dictionary.SuccinctSuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.SuccinctTrie;
+import com.challenge.keyboardprototype.dictionary.SuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.SuggestionSession;
+import com.challenge.keyboardprototype.dictionary.TrieSuggestionEngine;
+import com.challenge.keyboardprototype.dictionary.WordSampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a single key press: narrowing the candidates and fetching the suggestion list, as
+ * the trial screen does for every key.
+ *
+ * Engines are {@code trie}, a {@code KeyTrie} for the layout, or {@code succinct}, one
+ * {@code SuccinctTrie} for all layouts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuggestionBenchmark {
+    // Keep in step with TrialActivity.MAX_SUGGESTED_WORDS
+    private static final int MAX_SUGGESTIONS = 12;
+    private static final int TYPED_WORDS = 4096;
+    private static final long SEED = 1;
+
+    @Param({Dictionaries.SHIPPED, "100000", "1000000"})
+    public String dictionary;
+
+    @Param({"QWERTY_STANDARD", "QWERTY_NINE_KEY", "QWERTY_THREE_KEY"})
+    public String layout;
+
+    @Param({"trie", "succinct"})
+    public String engine;
+
+    private byte[][] m_words;
+    private SuggestionSession m_session;
+    private int m_word;
+    private int m_key;
+
+    @Setup
+    public void setUp() throws IOException {
+        ArrayLexicon lexicon = Dictionaries.load(dictionary);
+        KeyLayout keyLayout = Dictionaries.layout(layout);
+        SuggestionEngine suggestionEngine;
+        if ("succinct".equals(engine)) {
+            suggestionEngine = new SuccinctSuggestionEngine(SuccinctTrie.build(lexicon));
+        } else {
+            suggestionEngine = new TrieSuggestionEngine(lexicon, null, MAX_SUGGESTIONS);
+        }
+        m_session = suggestionEngine.newSession(keyLayout);
+
+        // The same target words a trial would pick, as key presses
+        WordSampler sampler = new WordSampler(lexicon, WordSampler.Mode.UNIFORM);
+        Random random = new Random(SEED);
+        List<byte[]> words = new ArrayList<>(TYPED_WORDS);
+        while (words.size() < TYPED_WORDS) {
+            byte[] keys = keyLayout.getSignature(sampler.sample(random));
+            if (keys.length > 0) {
+                words.add(keys);
+            }
+        }
+        m_words = words.toArray(new byte[TYPED_WORDS][]);
+    }
+
+    @Benchmark
+    public List<String> keyPress() {
+        byte[] keys = m_words[m_word];
+        if (m_key == keys.length) {
+            m_session.reset();
+            m_key = 0;
+            m_word = (m_word + 1) % m_words.length;
+            keys = m_words[m_word];
+        }
+
+        m_session.pressKey(keys[m_key++]);
+        return m_session.getSuggestedWords(MAX_SUGGESTIONS);
+    }
+}
@@ -0,0 +1,91 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Lexicon} held in ordinary arrays on the heap.
+ */
+public final class ArrayLexicon implements Lexicon {
+    private final String[] m_words;
+    private final int[] m_frequencies;
+
+    private ArrayLexicon(String[] words, int[] frequencies) {
+        m_words = words;
+        m_frequencies = frequencies;
+    }
+
+    @Override
+    public int size() {
+        return m_words.length;
+    }
+
+    @Override
+    public String getWord(int index) {
+        return m_words[index];
+    }
+
+    @Override
+    public int getFrequency(int index) {
+        return m_frequencies[index];
+    }
+
+    /**
+     * @return a copy of this lexicon with the words in alphabetical order
+     */
+    public ArrayLexicon sorted() {
+        Integer[] order = new Integer[m_words.length];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return m_words[lhs].compareTo(m_words[rhs]);
+            }
+        });
+
+        String[] words = new String[m_words.length];
+        int[] frequencies = new int[m_words.length];
+        for (int i = 0; i < order.length; ++i) {
+            words[i] = m_words[order[i]];
+            frequencies[i] = m_frequencies[order[i]];
+        }
+        return new ArrayLexicon(words, frequencies);
+    }
+
+    /**
+     * Collects words for a new {@link ArrayLexicon}. Adding a word twice replaces its frequency,
+     * matching the dictionary table's conflict handling.
+     */
+    public static final class Builder {
+        private final List<String> m_words = new ArrayList<>();
+        private final List<Integer> m_frequencies = new ArrayList<>();
+        private final Map<String, Integer> m_indices = new HashMap<>();
+
+        public Builder add(String word, int frequency) {
+            Integer index = m_indices.get(word);
+            if (index == null) {
+                m_indices.put(word, m_words.size());
+                m_words.add(word);
+                m_frequencies.add(frequency);
+            } else {
+                m_frequencies.set(index, frequency);
+            }
+            return this;
+        }
+
+        public ArrayLexicon build() {
+            String[] words = m_words.toArray(new String[m_words.size()]);
+            int[] frequencies = new int[words.length];
+            for (int i = 0; i < frequencies.length; ++i) {
+                frequencies[i] = m_frequencies.get(i);
+            }
+            return new ArrayLexicon(words, frequencies);
+        }
+    }
+}
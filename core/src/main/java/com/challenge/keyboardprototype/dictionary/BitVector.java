@@ -0,0 +1,160 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * Immutable bit sequence with constant time rank and fast select.
+ *
+ * Ones are counted per 512 bit block, and the block holding every {@link #SELECT_SAMPLE}th one
+ * and zero is remembered, which together cost about 7% on top of the bits themselves.
+ */
+final class BitVector {
+    private static final int BLOCK_WORDS = 8;
+    private static final int BLOCK_BITS = BLOCK_WORDS * 64;
+    private static final int SELECT_SAMPLE = 512;
+
+    private final long[] m_words;
+    private final int m_size;
+    private final int m_ones;
+    // Ones before each block, with a final entry for the total
+    private final int[] m_blockRanks;
+    private final int[] m_oneSamples;
+    private final int[] m_zeroSamples;
+
+    private BitVector(long[] words, int size) {
+        m_words = words;
+        m_size = size;
+
+        final int numBlocks = (size + BLOCK_BITS - 1) / BLOCK_BITS;
+        m_blockRanks = new int[numBlocks + 1];
+        int ones = 0;
+        for (int block = 0; block < numBlocks; ++block) {
+            m_blockRanks[block] = ones;
+            for (int i = block * BLOCK_WORDS; i < Math.min(words.length, (block + 1) * BLOCK_WORDS); ++i) {
+                ones += Long.bitCount(words[i]);
+            }
+        }
+        m_blockRanks[numBlocks] = ones;
+        m_ones = ones;
+
+        m_oneSamples = new int[ones / SELECT_SAMPLE + 1];
+        m_zeroSamples = new int[(size - ones) / SELECT_SAMPLE + 1];
+        for (int block = 0; block < numBlocks; ++block) {
+            final int onesBefore = m_blockRanks[block];
+            final int onesAfter = m_blockRanks[block + 1];
+            for (int sample = (onesBefore + SELECT_SAMPLE - 1) / SELECT_SAMPLE;
+                 sample * SELECT_SAMPLE < onesAfter; ++sample) {
+                m_oneSamples[sample] = block;
+            }
+            final int zerosBefore = block * BLOCK_BITS - onesBefore;
+            final int zerosAfter = Math.min((block + 1) * BLOCK_BITS, size) - onesAfter;
+            for (int sample = (zerosBefore + SELECT_SAMPLE - 1) / SELECT_SAMPLE;
+                 sample * SELECT_SAMPLE < zerosAfter; ++sample) {
+                m_zeroSamples[sample] = block;
+            }
+        }
+    }
+
+    int size() {
+        return m_size;
+    }
+
+    int getOneCount() {
+        return m_ones;
+    }
+
+    boolean get(int index) {
+        return (m_words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return the number of ones before {@code index}
+     */
+    int rank1(int index) {
+        final int word = index >>> 6;
+        int rank = m_blockRanks[word / BLOCK_WORDS];
+        for (int i = word - word % BLOCK_WORDS; i < word; ++i) {
+            rank += Long.bitCount(m_words[i]);
+        }
+        if ((index & 63) != 0) {
+            rank += Long.bitCount(m_words[word] & (-1L >>> (64 - (index & 63))));
+        }
+        return rank;
+    }
+
+    /**
+     * @return the number of zeros before {@code index}
+     */
+    int rank0(int index) {
+        return index - rank1(index);
+    }
+
+    /**
+     * @return the position of the one with the given zero based rank
+     */
+    int select1(int rank) {
+        int block = m_oneSamples[rank / SELECT_SAMPLE];
+        while (m_blockRanks[block + 1] <= rank) {
+            ++block;
+        }
+
+        int remaining = rank - m_blockRanks[block];
+        for (int i = block * BLOCK_WORDS; ; ++i) {
+            final int count = Long.bitCount(m_words[i]);
+            if (remaining < count) {
+                return i * 64 + selectInWord(m_words[i], remaining);
+            }
+            remaining -= count;
+        }
+    }
+
+    /**
+     * @return the position of the zero with the given zero based rank
+     */
+    int select0(int rank) {
+        int block = m_zeroSamples[rank / SELECT_SAMPLE];
+        while ((block + 1) * BLOCK_BITS - m_blockRanks[block + 1] <= rank) {
+            ++block;
+        }
+
+        int remaining = rank - (block * BLOCK_BITS - m_blockRanks[block]);
+        for (int i = block * BLOCK_WORDS; ; ++i) {
+            final long zeros = ~m_words[i];
+            final int count = Long.bitCount(zeros);
+            if (remaining < count) {
+                return i * 64 + selectInWord(zeros, remaining);
+            }
+            remaining -= count;
+        }
+    }
+
+    private static int selectInWord(long word, int rank) {
+        for (int i = 0; i < rank; ++i) {
+            word &= word - 1;
+        }
+        return Long.numberOfTrailingZeros(word);
+    }
+
+    long getMemoryUsage() {
+        return m_words.length * 8L + (m_blockRanks.length + m_oneSamples.length + m_zeroSamples.length) * 4L;
+    }
+
+    static final class Builder {
+        private long[] m_words = new long[16];
+        private int m_size;
+
+        void add(boolean bit) {
+            if (m_size == m_words.length * 64) {
+                m_words = Arrays.copyOf(m_words, m_words.length * 2);
+            }
+            if (bit) {
+                m_words[m_size >>> 6] |= 1L << m_size;
+            }
+            ++m_size;
+        }
+
+        BitVector build() {
+            return new BitVector(Arrays.copyOf(m_words, (m_size + 63) >>> 6), m_size);
+        }
+    }
+}
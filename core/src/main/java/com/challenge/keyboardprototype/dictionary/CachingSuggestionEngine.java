@@ -0,0 +1,276 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import com.challenge.keyboardprototype.metrics.Counter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the candidate counts and suggestions of recently typed key sequences in front of
+ * another engine, evicting the least recently used sequences once full.
+ *
+ * A key sequence and its layout are packed into one long. Sequences too long to pack are passed
+ * straight through. A session only replays its keys into the underlying engine's session when a
+ * lookup misses, so a sequence that is fully cached never reaches the underlying engine.
+ */
+public final class CachingSuggestionEngine implements SuggestionEngine {
+    // The top bits of a cache key identify the layout, the rest hold the key sequence
+    private static final int LAYOUT_BITS = 8;
+    private static final int SEQUENCE_BITS = 64 - LAYOUT_BITS;
+    private static final int NOT_CACHED = -1;
+
+    private final SuggestionEngine m_engine;
+    private final Counter m_hits;
+    private final Counter m_misses;
+    private final Map<KeyLayout, Integer> m_layoutIds = new HashMap<>();
+    private final LinkedHashMap<Long, CachedResult> m_cache;
+
+    /**
+     * @param capacity the most key sequences to remember
+     * @param hits counts suggestion lookups answered from the cache
+     * @param misses counts suggestion lookups passed on to {@code engine}
+     */
+    public CachingSuggestionEngine(SuggestionEngine engine, final int capacity, Counter hits, Counter misses) {
+        m_engine = engine;
+        m_hits = hits;
+        m_misses = misses;
+        m_cache = new LinkedHashMap<Long, CachedResult>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedResult> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return m_engine.getName() + "+cache";
+    }
+
+    @Override
+    public SuggestionSession newSession(KeyLayout layout) {
+        return new Session(m_engine.newSession(layout), layout, getLayoutId(layout), true);
+    }
+
+    @Override
+    public long getHeapUsage() {
+        return m_engine.getHeapUsage();
+    }
+
+    /**
+     * Looks up every prefix of the given words as if they were typed, so that their
+     * suggestions are cached before they are needed. Does not count towards the hit rate.
+     */
+    public void warm(KeyLayout layout, List<String> words, int numWords) {
+        Session session = new Session(m_engine.newSession(layout), layout, getLayoutId(layout), false);
+        for (String word : words) {
+            session.reset();
+            for (byte key : layout.getSignature(word)) {
+                session.pressKey(key);
+                session.getSuggestedWords(numWords);
+            }
+        }
+    }
+
+    /**
+     * Forgets every cached result, for when the dictionary has changed.
+     */
+    public void invalidate() {
+        synchronized (m_cache) {
+            m_cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (m_cache) {
+            return m_cache.size();
+        }
+    }
+
+    private int getLayoutId(KeyLayout layout) {
+        synchronized (m_layoutIds) {
+            Integer id = m_layoutIds.get(layout);
+            if (id == null) {
+                if (m_layoutIds.size() == 1 << LAYOUT_BITS) {
+                    return NOT_CACHED;
+                }
+                id = m_layoutIds.size();
+                m_layoutIds.put(layout, id);
+            }
+            return id;
+        }
+    }
+
+    private CachedResult get(long key) {
+        synchronized (m_cache) {
+            return m_cache.get(key);
+        }
+    }
+
+    private void put(long key, CachedResult entry) {
+        synchronized (m_cache) {
+            m_cache.put(key, entry);
+        }
+    }
+
+    private static final class CachedResult {
+        final int m_candidateCount;
+        // Suggestions found when m_numWords were asked for, or null if never asked
+        final List<String> m_words;
+        final int m_numWords;
+
+        CachedResult(int candidateCount, List<String> words, int numWords) {
+            m_candidateCount = candidateCount;
+            m_words = words;
+            m_numWords = numWords;
+        }
+
+        /**
+         * @return the best {@code numWords} suggestions, or null if they are not all known
+         */
+        List<String> getWords(int numWords) {
+            if (m_words == null) {
+                return null;
+            }
+            if (m_words.size() <= numWords) {
+                // Fewer suggestions than were asked for means there are no more
+                return m_words.size() < m_numWords || numWords == m_numWords ? m_words : null;
+            }
+            return m_words.subList(m_words.size() - numWords, m_words.size());
+        }
+    }
+
+    private final class Session implements SuggestionSession {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final SuggestionSession m_session;
+        private final boolean m_countLookups;
+        private final long m_layoutKey;
+        private final int m_keyBits;
+        private final int m_maxCachedKeys;
+
+        private int[] m_keys = new int[INITIAL_CAPACITY];
+        // m_sequences[i] and m_candidateCounts[i] are for the first i keys
+        private long[] m_sequences = new long[INITIAL_CAPACITY + 1];
+        private int[] m_candidateCounts = new int[INITIAL_CAPACITY + 1];
+        private int m_keyCount;
+        // The first m_sessionKeyCount keys have been pressed in m_session
+        private int m_sessionKeyCount;
+
+        Session(SuggestionSession session, KeyLayout layout, int layoutId, boolean countLookups) {
+            m_session = session;
+            m_countLookups = countLookups;
+            // Keys are stored one higher so that -1 fits, after a marker bit that keeps
+            // sequences of different lengths apart
+            m_keyBits = 32 - Integer.numberOfLeadingZeros(layout.getKeyCount());
+            m_maxCachedKeys = layoutId == NOT_CACHED ? 0 : (SEQUENCE_BITS - 1) / m_keyBits;
+            m_layoutKey = (long) layoutId << SEQUENCE_BITS;
+            m_sequences[0] = 1;
+        }
+
+        @Override
+        public int getKeyCount() {
+            return m_keyCount;
+        }
+
+        @Override
+        public int pressKey(int keyIndex) {
+            if (m_keyCount == m_keys.length) {
+                m_keys = Arrays.copyOf(m_keys, m_keys.length * 2);
+                m_sequences = Arrays.copyOf(m_sequences, m_keys.length + 1);
+                m_candidateCounts = Arrays.copyOf(m_candidateCounts, m_keys.length + 1);
+            }
+            m_keys[m_keyCount] = keyIndex;
+            m_sequences[m_keyCount + 1] = (m_sequences[m_keyCount] << m_keyBits) | (keyIndex + 1);
+            ++m_keyCount;
+
+            CachedResult entry = isCacheable() ? get(getCacheKey()) : null;
+            if (entry != null) {
+                m_candidateCounts[m_keyCount] = entry.m_candidateCount;
+            } else {
+                m_candidateCounts[m_keyCount] = catchUp();
+                if (isCacheable()) {
+                    put(getCacheKey(), new CachedResult(m_candidateCounts[m_keyCount], null, 0));
+                }
+            }
+            return m_candidateCounts[m_keyCount];
+        }
+
+        @Override
+        public void removeLastKey() {
+            if (m_keyCount > 0) {
+                --m_keyCount;
+            }
+            while (m_sessionKeyCount > m_keyCount) {
+                m_session.removeLastKey();
+                --m_sessionKeyCount;
+            }
+        }
+
+        @Override
+        public void reset() {
+            m_keyCount = 0;
+            m_sessionKeyCount = 0;
+            m_session.reset();
+        }
+
+        @Override
+        public int getCandidateCount() {
+            return m_keyCount == 0 ? 0 : m_candidateCounts[m_keyCount];
+        }
+
+        @Override
+        public List<String> getSuggestedWords(int numWords) {
+            if (m_keyCount == 0) {
+                return Collections.emptyList();
+            }
+            if (!isCacheable()) {
+                catchUp();
+                return m_session.getSuggestedWords(numWords);
+            }
+
+            final long key = getCacheKey();
+            CachedResult entry = get(key);
+            List<String> words = entry != null ? entry.getWords(numWords) : null;
+            if (words != null) {
+                if (m_countLookups) {
+                    m_hits.increment();
+                }
+                return words;
+            }
+
+            if (m_countLookups) {
+                m_misses.increment();
+            }
+            catchUp();
+            words = Collections.unmodifiableList(m_session.getSuggestedWords(numWords));
+            put(key, new CachedResult(m_candidateCounts[m_keyCount], words, numWords));
+            return words;
+        }
+
+        private boolean isCacheable() {
+            return m_keyCount <= m_maxCachedKeys;
+        }
+
+        private long getCacheKey() {
+            return m_layoutKey | m_sequences[m_keyCount];
+        }
+
+        /**
+         * Presses the keys that m_session has not seen yet.
+         *
+         * @return the candidate count for all keys
+         */
+        private int catchUp() {
+            int candidateCount = m_candidateCounts[m_keyCount];
+            while (m_sessionKeyCount < m_keyCount) {
+                candidateCount = m_session.pressKey(m_keys[m_sessionKeyCount++]);
+            }
+            return candidateCount;
+        }
+    }
+}
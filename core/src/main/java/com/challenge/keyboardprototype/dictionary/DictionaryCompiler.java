@@ -0,0 +1,60 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line tool that compiles a {@code word,frequency} list into a {@link DictionaryFile}
+ * with prebuilt tries for every standard layout. Run by the app build.
+ *
+ * Usage: {@code DictionaryCompiler <input.csv> <output.bin> <suggestions per node>}
+ */
+public final class DictionaryCompiler {
+    private static final KeyLayout[] LAYOUTS = {
+            KeyLayout.QWERTY_STANDARD,
+            KeyLayout.QWERTY_NINE_KEY,
+            KeyLayout.QWERTY_THREE_KEY,
+    };
+
+    private DictionaryCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: DictionaryCompiler <input.csv> <output.bin> <suggestions per node>");
+            System.exit(1);
+        }
+        final int topCount = Integer.parseInt(args[2]);
+
+        ArrayLexicon.Builder builder = new ArrayLexicon.Builder();
+        WordListReader reader = new WordListReader(new InputStreamReader(new FileInputStream(args[0]), "UTF-8"));
+        try {
+            while (reader.next()) {
+                builder.add(reader.getWord(), reader.getFrequency());
+            }
+        } finally {
+            reader.close();
+        }
+
+        ArrayLexicon lexicon = builder.build().sorted();
+        List<KeyTrie> tries = new ArrayList<>(LAYOUTS.length);
+        for (KeyLayout layout : LAYOUTS) {
+            tries.add(KeyTrie.build(lexicon, layout, topCount));
+        }
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]));
+        try {
+            DictionaryFile.write(lexicon, tries, out);
+        } finally {
+            out.close();
+        }
+
+        System.out.println("Compiled " + lexicon.size() + " words into " + args[1]);
+    }
+}
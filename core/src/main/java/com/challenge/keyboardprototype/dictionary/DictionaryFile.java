@@ -0,0 +1,245 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary form of a dictionary and its {@link KeyTrie}s, designed to be memory mapped.
+ *
+ * Nothing is copied onto the heap when a file is read: the lexicon and tries read their tables
+ * straight out of the buffer. All values are big endian and every section starts on a four byte
+ * boundary.
+ *
+ * <pre>
+ * header:  int magic, int version, int wordCount, int layoutCount
+ * words:   int[wordCount + 1] offsets into the word bytes
+ *          int[wordCount]     frequencies
+ *          int byteCount, byte[byteCount] UTF-8 words in alphabetical order
+ * layouts: for each layout
+ *            int byteCount, byte[byteCount] keys separated by spaces
+ *            int nodeCount
+ *            int[wordCount] order, int[nodeCount] rangeStart, rangeEnd, firstChild
+ *            int topCount, int[nodeCount * topCount] topWords
+ *            byte[nodeCount] childCount
+ *            byte[nodeCount] key
+ * </pre>
+ */
+public final class DictionaryFile {
+    private static final int MAGIC = 0x4B424431; // "KBD1"
+    private static final int VERSION = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String KEY_SEPARATOR = " ";
+
+    private final Lexicon m_lexicon;
+    private final Map<KeyLayout, KeyTrie> m_tries;
+
+    private DictionaryFile(Lexicon lexicon, Map<KeyLayout, KeyTrie> tries) {
+        m_lexicon = lexicon;
+        m_tries = tries;
+    }
+
+    public Lexicon getLexicon() {
+        return m_lexicon;
+    }
+
+    /**
+     * @return the prebuilt trie for the given layout, or null if the file has none
+     */
+    public KeyTrie getTrie(KeyLayout layout) {
+        return m_tries.get(layout);
+    }
+
+    /**
+     * Writes a dictionary. The tries must all have been built over {@code lexicon}, whose words
+     * must already be in alphabetical order.
+     */
+    public static void write(Lexicon lexicon, Collection<KeyTrie> tries, OutputStream stream)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        final int numWords = lexicon.size();
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(numWords);
+        out.writeInt(tries.size());
+
+        byte[][] wordBytes = new byte[numWords][];
+        int offset = 0;
+        out.writeInt(offset);
+        for (int i = 0; i < numWords; ++i) {
+            if (i > 0 && lexicon.getWord(i - 1).compareTo(lexicon.getWord(i)) >= 0) {
+                throw new IllegalArgumentException("Words must be unique and sorted: " + lexicon.getWord(i));
+            }
+            wordBytes[i] = lexicon.getWord(i).getBytes(UTF_8);
+            offset += wordBytes[i].length;
+            out.writeInt(offset);
+        }
+        for (int i = 0; i < numWords; ++i) {
+            out.writeInt(lexicon.getFrequency(i));
+        }
+        out.writeInt(offset);
+        for (byte[] bytes : wordBytes) {
+            out.write(bytes);
+        }
+        pad(out);
+
+        for (KeyTrie trie : tries) {
+            if (trie.getLexicon() != lexicon) {
+                throw new IllegalArgumentException("Trie was built over a different lexicon.");
+            }
+
+            KeyLayout layout = trie.getLayout();
+            StringBuilder keys = new StringBuilder();
+            for (int key = 0; key < layout.getKeyCount(); ++key) {
+                if (key > 0) {
+                    keys.append(KEY_SEPARATOR);
+                }
+                keys.append(layout.getKeyLetters(key));
+            }
+            byte[] keyBytes = keys.toString().getBytes(UTF_8);
+            out.writeInt(keyBytes.length);
+            out.write(keyBytes);
+            pad(out);
+
+            out.writeInt(trie.getNodeCount());
+            writeInts(out, trie.getOrder());
+            writeInts(out, trie.getRangeStarts());
+            writeInts(out, trie.getRangeEnds());
+            writeInts(out, trie.getFirstChildren());
+            out.writeInt(trie.getTopCount());
+            writeInts(out, trie.getTopWords());
+            writeBytes(out, trie.getChildCounts());
+            pad(out);
+            writeBytes(out, trie.getKeys());
+            pad(out);
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Reads a dictionary written by {@link #write}. The buffer must not be modified afterwards.
+     *
+     * @throws IOException if the buffer does not hold a dictionary in a supported format
+     */
+    public static DictionaryFile read(ByteBuffer buffer) throws IOException {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (in.remaining() < 16 || in.getInt() != MAGIC) {
+            throw new IOException("Not a dictionary file.");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported dictionary file version " + version);
+        }
+
+        final int numWords = in.getInt();
+        final int numLayouts = in.getInt();
+
+        IntBuffer offsets = sliceInts(in, numWords + 1);
+        IntBuffer frequencies = sliceInts(in, numWords);
+        ByteBuffer words = sliceBytes(in, in.getInt());
+        Lexicon lexicon = new BufferLexicon(offsets, frequencies, words);
+
+        Map<KeyLayout, KeyTrie> tries = new HashMap<>();
+        for (int i = 0; i < numLayouts; ++i) {
+            byte[] keyBytes = new byte[in.getInt()];
+            in.get(keyBytes);
+            skipPadding(in);
+            KeyLayout layout = new KeyLayout(new String(keyBytes, UTF_8).split(KEY_SEPARATOR));
+
+            final int numNodes = in.getInt();
+            IntBuffer order = sliceInts(in, numWords);
+            IntBuffer rangeStart = sliceInts(in, numNodes);
+            IntBuffer rangeEnd = sliceInts(in, numNodes);
+            IntBuffer firstChild = sliceInts(in, numNodes);
+            int topCount = in.getInt();
+            IntBuffer topWords = sliceInts(in, numNodes * topCount);
+            ByteBuffer childCount = sliceBytes(in, numNodes);
+            ByteBuffer key = sliceBytes(in, numNodes);
+            tries.put(layout, new KeyTrie(lexicon, layout, order, rangeStart, rangeEnd, firstChild,
+                    childCount, key, topCount, topWords));
+        }
+
+        return new DictionaryFile(lexicon, tries);
+    }
+
+    private static void writeInts(DataOutputStream out, IntBuffer values) throws IOException {
+        while (values.hasRemaining()) {
+            out.writeInt(values.get());
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, ByteBuffer values) throws IOException {
+        while (values.hasRemaining()) {
+            out.writeByte(values.get());
+        }
+    }
+
+    private static void pad(DataOutputStream out) throws IOException {
+        while (out.size() % 4 != 0) {
+            out.writeByte(0);
+        }
+    }
+
+    private static void skipPadding(ByteBuffer in) {
+        in.position((in.position() + 3) & ~3);
+    }
+
+    private static IntBuffer sliceInts(ByteBuffer in, int count) {
+        ByteBuffer slice = in.slice().order(in.order());
+        slice.limit(count * 4);
+        in.position(in.position() + count * 4);
+        return slice.asIntBuffer();
+    }
+
+    private static ByteBuffer sliceBytes(ByteBuffer in, int count) {
+        ByteBuffer slice = in.slice();
+        slice.limit(count);
+        in.position(in.position() + count);
+        skipPadding(in);
+        return slice;
+    }
+
+    /**
+     * Lexicon that decodes its words from a buffer on demand.
+     */
+    private static final class BufferLexicon implements Lexicon {
+        private final IntBuffer m_offsets;
+        private final IntBuffer m_frequencies;
+        private final ByteBuffer m_words;
+
+        BufferLexicon(IntBuffer offsets, IntBuffer frequencies, ByteBuffer words) {
+            m_offsets = offsets;
+            m_frequencies = frequencies;
+            m_words = words;
+        }
+
+        @Override
+        public int size() {
+            return m_frequencies.capacity();
+        }
+
+        @Override
+        public String getWord(int index) {
+            final int start = m_offsets.get(index);
+            byte[] bytes = new byte[m_offsets.get(index + 1) - start];
+            for (int i = 0; i < bytes.length; ++i) {
+                bytes[i] = m_words.get(start + i);
+            }
+            return new String(bytes, UTF_8);
+        }
+
+        @Override
+        public int getFrequency(int index) {
+            return m_frequencies.get(index);
+        }
+    }
+}
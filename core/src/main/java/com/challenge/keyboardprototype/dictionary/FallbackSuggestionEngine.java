@@ -0,0 +1,60 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Uses a primary engine, switching a layout over to a fallback engine for good if the primary
+ * engine runs out of memory preparing it.
+ *
+ * Running out of memory is recoverable here because an engine allocates its index for a layout
+ * in one go when the first session is created, and the partial index is unreachable once the
+ * error unwinds.
+ */
+public final class FallbackSuggestionEngine implements SuggestionEngine {
+    private final SuggestionEngine m_primary;
+    private final SuggestionEngine m_fallback;
+    private final Set<KeyLayout> m_failedLayouts = new HashSet<>();
+
+    public FallbackSuggestionEngine(SuggestionEngine primary, SuggestionEngine fallback) {
+        m_primary = primary;
+        m_fallback = fallback;
+    }
+
+    @Override
+    public String getName() {
+        return m_primary.getName() + "/" + m_fallback.getName();
+    }
+
+    @Override
+    public SuggestionSession newSession(KeyLayout layout) {
+        synchronized (m_failedLayouts) {
+            if (m_failedLayouts.contains(layout)) {
+                return m_fallback.newSession(layout);
+            }
+        }
+
+        try {
+            return m_primary.newSession(layout);
+        } catch (OutOfMemoryError e) {
+            synchronized (m_failedLayouts) {
+                m_failedLayouts.add(layout);
+            }
+            return m_fallback.newSession(layout);
+        }
+    }
+
+    /**
+     * @return true if the fallback engine has taken over any layout
+     */
+    public boolean hasFallenBack() {
+        synchronized (m_failedLayouts) {
+            return !m_failedLayouts.isEmpty();
+        }
+    }
+
+    @Override
+    public long getHeapUsage() {
+        return m_primary.getHeapUsage() + m_fallback.getHeapUsage();
+    }
+}
@@ -0,0 +1,99 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The letters assigned to each key of a keyboard, independent of how the keys are drawn.
+ *
+ * Keys are identified by their index in the layout. Every letter belongs to at most one key.
+ */
+public final class KeyLayout {
+    private static final int NO_KEY = -1;
+
+    public static final KeyLayout QWERTY_STANDARD = new KeyLayout(
+            "q", "w", "e", "r", "t", "y", "u", "i", "o", "p",
+            "a", "s", "d", "f", "g", "h", "j", "k", "l",
+            "z", "x", "c", "v", "b", "n", "m");
+    public static final KeyLayout QWERTY_NINE_KEY = new KeyLayout(
+            "qwe", "rty", "uiop",
+            "asd", "fgh", "jkl",
+            "zxc", "vb", "nm");
+    public static final KeyLayout QWERTY_THREE_KEY = new KeyLayout(
+            "qweasdzxc", "rtyfghvb", "uiopjklnm");
+
+    private final String[] m_keys;
+    private final byte[] m_keyForChar = new byte[128];
+
+    public KeyLayout(String... keys) {
+        if (keys.length == 0 || keys.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Unsupported number of keys: " + keys.length);
+        }
+
+        m_keys = new String[keys.length];
+        Arrays.fill(m_keyForChar, (byte) NO_KEY);
+
+        for (int key = 0; key < keys.length; ++key) {
+            m_keys[key] = keys[key].toLowerCase(Locale.ROOT);
+            for (int i = 0; i < m_keys[key].length(); ++i) {
+                char c = m_keys[key].charAt(i);
+                if (c >= 'a' && c <= 'z') {
+                    if (m_keyForChar[c] != NO_KEY) {
+                        throw new IllegalArgumentException("Letter '" + c + "' is on more than one key.");
+                    }
+                    m_keyForChar[c] = (byte) key;
+                    m_keyForChar[Character.toUpperCase(c)] = (byte) key;
+                } else {
+                    throw new IllegalArgumentException("Keys may only contain letters: " + keys[key]);
+                }
+            }
+        }
+    }
+
+    public int getKeyCount() {
+        return m_keys.length;
+    }
+
+    /**
+     * @return the lower case letters on the given key
+     */
+    public String getKeyLetters(int keyIndex) {
+        return m_keys[keyIndex];
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof KeyLayout && Arrays.equals(m_keys, ((KeyLayout) other).m_keys);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(m_keys);
+    }
+
+    /**
+     * @return the index of the key that types the given character, or -1 if no key does
+     */
+    public int keyIndexOf(char c) {
+        return c < m_keyForChar.length ? m_keyForChar[c] : NO_KEY;
+    }
+
+    /**
+     * Maps a word onto the sequence of keys that types it.
+     *
+     * The signature stops at the first character that is not on any key, so a word like "n't"
+     * can still be reached by typing the keys for its leading letters.
+     */
+    public byte[] getSignature(CharSequence word) {
+        int length = 0;
+        while (length < word.length() && keyIndexOf(word.charAt(length)) != NO_KEY) {
+            ++length;
+        }
+
+        byte[] signature = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            signature[i] = (byte) keyIndexOf(word.charAt(i));
+        }
+        return signature;
+    }
+}
@@ -0,0 +1,344 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * In-memory suggestion index for one {@link KeyLayout}.
+ *
+ * Each word of the lexicon is mapped onto the keys that type it, and those key signatures are
+ * stored in a trie with one child per key. A node therefore stands for an ambiguous key
+ * sequence, and every word that can be typed by that sequence lies beneath it. Words are kept
+ * sorted by signature, so the words under a node are one contiguous range of {@link #m_order}.
+ *
+ * Every node also stores its most frequent words, best first, so that a query for no more than
+ * that many suggestions is answered by reading one node without looking at any other words.
+ *
+ * Nodes are numbered in breadth-first order with the children of a node stored next to each
+ * other, ordered by key. The node tables are kept in buffers so that a trie stored in a
+ * {@link DictionaryFile} can be used straight from a memory mapped file.
+ */
+public final class KeyTrie {
+    public static final int ROOT = 0;
+    public static final int NO_NODE = -1;
+    private static final int NO_WORD = -1;
+
+    private final Lexicon   m_lexicon;
+    private final KeyLayout m_layout;
+
+    private final IntBuffer  m_order;        // word indices sorted by key signature
+    private final IntBuffer  m_rangeStart;   // first entry of m_order under each node
+    private final IntBuffer  m_rangeEnd;     // one past the last entry of m_order under each node
+    private final IntBuffer  m_firstChild;
+    private final ByteBuffer m_childCount;
+    private final ByteBuffer m_key;          // key leading into each node from its parent
+    private final int        m_topCount;
+    private final IntBuffer  m_topWords;     // m_topCount best words of each node, padded with NO_WORD
+
+    KeyTrie(Lexicon lexicon, KeyLayout layout, IntBuffer order,
+            IntBuffer rangeStart, IntBuffer rangeEnd, IntBuffer firstChild,
+            ByteBuffer childCount, ByteBuffer key, int topCount, IntBuffer topWords) {
+        m_lexicon = lexicon;
+        m_layout = layout;
+        m_order = order;
+        m_rangeStart = rangeStart;
+        m_rangeEnd = rangeEnd;
+        m_firstChild = firstChild;
+        m_childCount = childCount;
+        m_key = key;
+        m_topCount = topCount;
+        m_topWords = topWords;
+    }
+
+    /**
+     * @param topCount number of most frequent words to store at every node, normally the
+     *                 maximum number of suggestions that will be requested
+     */
+    public static KeyTrie build(Lexicon lexicon, KeyLayout layout, int topCount) {
+        final int numWords = lexicon.size();
+        final byte[][] signatures = new byte[numWords][];
+        Integer[] sorted = new Integer[numWords];
+        for (int i = 0; i < numWords; ++i) {
+            signatures[i] = layout.getSignature(lexicon.getWord(i));
+            sorted[i] = i;
+        }
+
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return compareSignatures(signatures[lhs], signatures[rhs]);
+            }
+        });
+
+        // Every signature adds one node per key beyond the prefix it shares with its predecessor
+        int[] order = new int[numWords];
+        int numNodes = 1;
+        byte[] previous = new byte[0];
+        for (int i = 0; i < numWords; ++i) {
+            order[i] = sorted[i];
+            byte[] signature = signatures[order[i]];
+            numNodes += signature.length - commonPrefixLength(previous, signature);
+            previous = signature;
+        }
+
+        return buildNodes(lexicon, layout, order, numNodes, signatures, topCount);
+    }
+
+    private static KeyTrie buildNodes(Lexicon lexicon, KeyLayout layout, int[] order, int numNodes,
+                                      byte[][] signatures, int topCount) {
+        int[] rangeStart = new int[numNodes];
+        int[] rangeEnd = new int[numNodes];
+        int[] firstChild = new int[numNodes];
+        byte[] childCount = new byte[numNodes];
+        byte[] keys = new byte[numNodes];
+        int[] depths = new int[numNodes];
+
+        rangeStart[ROOT] = 0;
+        rangeEnd[ROOT] = order.length;
+        int created = 1;
+
+        for (int node = 0; node < created; ++node) {
+            final int depth = depths[node];
+            final int end = rangeEnd[node];
+
+            // Words that end at this node sort ahead of any longer signatures
+            int i = rangeStart[node];
+            while (i < end && signatures[order[i]].length == depth) {
+                ++i;
+            }
+
+            firstChild[node] = created;
+            while (i < end) {
+                byte key = signatures[order[i]][depth];
+                int j = i + 1;
+                while (j < end && signatures[order[j]][depth] == key) {
+                    ++j;
+                }
+
+                rangeStart[created] = i;
+                rangeEnd[created] = j;
+                keys[created] = key;
+                depths[created] = depth + 1;
+                ++childCount[node];
+                ++created;
+                i = j;
+            }
+        }
+
+        int[] topWords = buildTopWords(lexicon, order, rangeStart, rangeEnd, firstChild, childCount, topCount);
+
+        return new KeyTrie(lexicon, layout, IntBuffer.wrap(order),
+                IntBuffer.wrap(rangeStart), IntBuffer.wrap(rangeEnd), IntBuffer.wrap(firstChild),
+                ByteBuffer.wrap(childCount), ByteBuffer.wrap(keys), topCount, IntBuffer.wrap(topWords));
+    }
+
+    /**
+     * Computes the best words of every node from the words ending at the node and the best
+     * words of its children. Children always have higher numbers than their parent, so walking
+     * the nodes backwards visits every child first.
+     */
+    private static int[] buildTopWords(Lexicon lexicon, int[] order, int[] rangeStart, int[] rangeEnd,
+                                       int[] firstChild, byte[] childCount, int topCount) {
+        final int numNodes = rangeStart.length;
+        int[] topWords = new int[numNodes * topCount];
+        Arrays.fill(topWords, NO_WORD);
+        if (topCount == 0) {
+            return topWords;
+        }
+
+        int[] best = new int[topCount];
+        for (int node = numNodes - 1; node >= 0; --node) {
+            int numBest = 0;
+
+            // Words ending at this node sort ahead of the first child's words
+            int wordsEnd = childCount[node] == 0 ? rangeEnd[node] : rangeStart[firstChild[node]];
+            for (int i = rangeStart[node]; i < wordsEnd; ++i) {
+                numBest = insertBest(lexicon, best, numBest, order[i]);
+            }
+
+            final int lastChild = firstChild[node] + childCount[node];
+            for (int child = firstChild[node]; child < lastChild; ++child) {
+                for (int i = child * topCount; i < (child + 1) * topCount && topWords[i] != NO_WORD; ++i) {
+                    numBest = insertBest(lexicon, best, numBest, topWords[i]);
+                }
+            }
+
+            System.arraycopy(best, 0, topWords, node * topCount, numBest);
+        }
+        return topWords;
+    }
+
+    /**
+     * Inserts a word into a list of words sorted by descending frequency if it is among the best
+     * {@code best.length} words seen so far.
+     *
+     * @return the new number of words in the list
+     */
+    private static int insertBest(Lexicon lexicon, int[] best, int numBest, int word) {
+        final int frequency = lexicon.getFrequency(word);
+        if (numBest == best.length && !isBetter(lexicon, word, frequency, best[numBest - 1])) {
+            return numBest;
+        }
+
+        int pos = numBest < best.length ? numBest++ : numBest - 1;
+        while (pos > 0 && isBetter(lexicon, word, frequency, best[pos - 1])) {
+            best[pos] = best[pos - 1];
+            --pos;
+        }
+        best[pos] = word;
+        return numBest;
+    }
+
+    private static boolean isBetter(Lexicon lexicon, int word, int frequency, int other) {
+        int otherFrequency = lexicon.getFrequency(other);
+        return frequency > otherFrequency || (frequency == otherFrequency && word < other);
+    }
+
+    private static int compareSignatures(byte[] lhs, byte[] rhs) {
+        int length = Math.min(lhs.length, rhs.length);
+        for (int i = 0; i < length; ++i) {
+            if (lhs[i] != rhs[i]) {
+                return lhs[i] < rhs[i] ? -1 : 1;
+            }
+        }
+        return lhs.length - rhs.length;
+    }
+
+    private static int commonPrefixLength(byte[] lhs, byte[] rhs) {
+        int length = Math.min(lhs.length, rhs.length);
+        int i = 0;
+        while (i < length && lhs[i] == rhs[i]) {
+            ++i;
+        }
+        return i;
+    }
+
+    public Lexicon getLexicon() {
+        return m_lexicon;
+    }
+
+    public KeyLayout getLayout() {
+        return m_layout;
+    }
+
+    public int getNodeCount() {
+        return m_rangeStart.capacity();
+    }
+
+    IntBuffer getOrder() {
+        return m_order.duplicate();
+    }
+
+    IntBuffer getRangeStarts() {
+        return m_rangeStart.duplicate();
+    }
+
+    IntBuffer getRangeEnds() {
+        return m_rangeEnd.duplicate();
+    }
+
+    IntBuffer getFirstChildren() {
+        return m_firstChild.duplicate();
+    }
+
+    ByteBuffer getChildCounts() {
+        return m_childCount.duplicate();
+    }
+
+    ByteBuffer getKeys() {
+        return m_key.duplicate();
+    }
+
+    int getTopCount() {
+        return m_topCount;
+    }
+
+    IntBuffer getTopWords() {
+        return m_topWords.duplicate();
+    }
+
+    /**
+     * @return the approximate number of bytes used by the trie's tables, excluding the lexicon
+     */
+    public long getMemoryUsage() {
+        return 4L * (m_order.capacity() + m_rangeStart.capacity() + m_rangeEnd.capacity() +
+                m_firstChild.capacity() + m_topWords.capacity()) +
+                m_childCount.capacity() + m_key.capacity();
+    }
+
+    /**
+     * @return the node reached by pressing the given key from the given node, or
+     *         {@link #NO_NODE} if no word continues that way
+     */
+    public int getChild(int node, int keyIndex) {
+        final int first = m_firstChild.get(node);
+        final int last = first + m_childCount.get(node);
+        for (int child = first; child < last; ++child) {
+            final byte key = m_key.get(child);
+            if (key == keyIndex) {
+                return child;
+            } else if (key > keyIndex) {
+                break;
+            }
+        }
+        return NO_NODE;
+    }
+
+    /**
+     * @return the node for the first {@code count} keys of {@code keys}, or {@link #NO_NODE}
+     */
+    public int findNode(int[] keys, int count) {
+        int node = ROOT;
+        for (int i = 0; i < count && node != NO_NODE; ++i) {
+            node = getChild(node, keys[i]);
+        }
+        return node;
+    }
+
+    /**
+     * @return the number of words that can be typed starting with the node's key sequence
+     */
+    public int getWordCount(int node) {
+        return node == NO_NODE ? 0 : m_rangeEnd.get(node) - m_rangeStart.get(node);
+    }
+
+    /**
+     * Finds the most frequent words beneath a node. Requests for no more words than were stored
+     * at each node when the trie was built are answered from the node alone.
+     *
+     * @return up to {@code numWords} words in ascending order of frequency, so the best match is last
+     */
+    public List<String> getSuggestedWords(int node, int numWords) {
+        if (node == NO_NODE || numWords <= 0) {
+            return Collections.emptyList();
+        }
+
+        int[] best;
+        int numBest = 0;
+        if (numWords <= m_topCount) {
+            best = new int[numWords];
+            final int start = node * m_topCount;
+            while (numBest < numWords && m_topWords.get(start + numBest) != NO_WORD) {
+                best[numBest] = m_topWords.get(start + numBest);
+                ++numBest;
+            }
+        } else {
+            best = new int[Math.min(numWords, getWordCount(node))];
+            final int end = m_rangeEnd.get(node);
+            for (int i = m_rangeStart.get(node); i < end; ++i) {
+                numBest = insertBest(m_lexicon, best, numBest, m_order.get(i));
+            }
+        }
+
+        List<String> words = new ArrayList<>(numBest);
+        for (int i = numBest - 1; i >= 0; --i) {
+            words.add(m_lexicon.getWord(best[i]));
+        }
+        return words;
+    }
+}
@@ -0,0 +1,14 @@
+package com.challenge.keyboardprototype.dictionary;
+
+/**
+ * An immutable list of dictionary words and their frequencies.
+ *
+ * Words are identified by their index, which is stable for the life of the lexicon.
+ */
+public interface Lexicon {
+    int size();
+
+    String getWord(int index);
+
+    int getFrequency(int index);
+}
@@ -0,0 +1,78 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * Immutable array of non-negative ints stored with a fixed number of bits each.
+ */
+final class PackedIntArray {
+    private final long[] m_words;
+    private final int m_bits;
+    private final int m_size;
+    private final long m_mask;
+
+    private PackedIntArray(long[] words, int bits, int size) {
+        m_words = words;
+        m_bits = bits;
+        m_size = size;
+        m_mask = bits == 0 ? 0 : -1L >>> (64 - bits);
+    }
+
+    /**
+     * @return the number of bits needed to store every value up to {@code maxValue}
+     */
+    static int bitsFor(long maxValue) {
+        return 64 - Long.numberOfLeadingZeros(maxValue);
+    }
+
+    static PackedIntArray of(int[] values, int size) {
+        int max = 0;
+        for (int i = 0; i < size; ++i) {
+            if (values[i] < 0) {
+                throw new IllegalArgumentException("Negative value " + values[i]);
+            }
+            max = Math.max(max, values[i]);
+        }
+
+        final int bits = bitsFor(max);
+        long[] words = new long[(int) (((long) size * bits + 63) >>> 6)];
+        for (int i = 0; i < size && bits > 0; ++i) {
+            final long bit = (long) i * bits;
+            final int word = (int) (bit >>> 6);
+            final int shift = (int) (bit & 63);
+            words[word] |= (long) values[i] << shift;
+            if (shift + bits > 64) {
+                words[word + 1] |= (long) values[i] >>> (64 - shift);
+            }
+        }
+        return new PackedIntArray(words, bits, size);
+    }
+
+    int size() {
+        return m_size;
+    }
+
+    int get(int index) {
+        final long bit = (long) index * m_bits;
+        final int word = (int) (bit >>> 6);
+        final int shift = (int) (bit & 63);
+        long value = m_words[word] >>> shift;
+        if (shift + m_bits > 64) {
+            value |= m_words[word + 1] << (64 - shift);
+        }
+        return (int) (value & m_mask);
+    }
+
+    long getMemoryUsage() {
+        return m_words.length * 8L;
+    }
+
+    @Override
+    public String toString() {
+        int[] values = new int[m_size];
+        for (int i = 0; i < m_size; ++i) {
+            values[i] = get(i);
+        }
+        return Arrays.toString(values);
+    }
+}
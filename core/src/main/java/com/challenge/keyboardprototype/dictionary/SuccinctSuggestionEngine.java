@@ -0,0 +1,223 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Suggests words from one {@link SuccinctTrie} shared by all layouts.
+ *
+ * A session tracks every node whose letters can be typed by the keys pressed so far. Suggestions
+ * are found by a best-first search from those nodes, ordered by the frequency bound stored at
+ * each node, which stops as soon as enough words have been found. Words of equal frequency are
+ * suggested shortest first.
+ */
+public final class SuccinctSuggestionEngine implements SuggestionEngine {
+    /** Upper bound on the heap used by a trie per word, measured over several dictionaries. */
+    public static final int ESTIMATED_BYTES_PER_WORD = 16;
+
+    private final SuccinctTrie m_trie;
+
+    public SuccinctSuggestionEngine(SuccinctTrie trie) {
+        m_trie = trie;
+    }
+
+    public SuccinctTrie getTrie() {
+        return m_trie;
+    }
+
+    @Override
+    public String getName() {
+        return "succinct";
+    }
+
+    @Override
+    public SuggestionSession newSession(KeyLayout layout) {
+        return new Session(m_trie, layout);
+    }
+
+    @Override
+    public long getHeapUsage() {
+        return m_trie.getMemoryUsage();
+    }
+
+    private static final class Session implements SuggestionSession {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final SuccinctTrie m_trie;
+        // Key typing each letter of the trie's alphabet, or -1
+        private final int[] m_keyForLabel;
+
+        // m_frontiers[i] holds the m_frontierSizes[i] nodes reached by the first i keys
+        private int[][] m_frontiers = new int[INITIAL_CAPACITY + 1][];
+        private int[] m_frontierSizes = new int[INITIAL_CAPACITY + 1];
+        private int[] m_wordCounts = new int[INITIAL_CAPACITY + 1];
+        private int m_keyCount;
+
+        // Max heap of search entries, reused between queries
+        private long[] m_heapKeys = new long[64];
+        private int[] m_heapNodes = new int[64];
+        private int m_heapSize;
+
+        Session(SuccinctTrie trie, KeyLayout layout) {
+            m_trie = trie;
+
+            char[] alphabet = trie.getAlphabet();
+            m_keyForLabel = new int[alphabet.length];
+            for (int label = 0; label < alphabet.length; ++label) {
+                m_keyForLabel[label] = layout.keyIndexOf(alphabet[label]);
+            }
+
+            m_frontiers[0] = new int[] { SuccinctTrie.ROOT };
+            m_frontierSizes[0] = 1;
+        }
+
+        @Override
+        public int getKeyCount() {
+            return m_keyCount;
+        }
+
+        @Override
+        public int pressKey(int keyIndex) {
+            if (m_keyCount + 1 == m_frontiers.length) {
+                m_frontiers = Arrays.copyOf(m_frontiers, m_frontiers.length * 2);
+                m_frontierSizes = Arrays.copyOf(m_frontierSizes, m_frontierSizes.length * 2);
+                m_wordCounts = Arrays.copyOf(m_wordCounts, m_wordCounts.length * 2);
+            }
+
+            final int[] from = m_frontiers[m_keyCount];
+            final int fromSize = m_frontierSizes[m_keyCount];
+            int[] to = m_frontiers[m_keyCount + 1];
+            if (to == null) {
+                to = new int[INITIAL_CAPACITY];
+            }
+            int size = 0;
+            int wordCount = 0;
+
+            for (int i = 0; i < fromSize && keyIndex >= 0; ++i) {
+                final int end = m_trie.getChildEnd(from[i]);
+                for (int child = m_trie.getFirstChild(from[i]); child < end; ++child) {
+                    if (m_keyForLabel[m_trie.getLabel(child)] == keyIndex) {
+                        if (size == to.length) {
+                            to = Arrays.copyOf(to, size * 2);
+                        }
+                        to[size++] = child;
+                        wordCount += m_trie.getWordCount(child);
+                    }
+                }
+            }
+
+            ++m_keyCount;
+            m_frontiers[m_keyCount] = to;
+            m_frontierSizes[m_keyCount] = size;
+            m_wordCounts[m_keyCount] = wordCount;
+            return wordCount;
+        }
+
+        @Override
+        public void removeLastKey() {
+            if (m_keyCount > 0) {
+                --m_keyCount;
+            }
+        }
+
+        @Override
+        public void reset() {
+            m_keyCount = 0;
+        }
+
+        @Override
+        public int getCandidateCount() {
+            return m_wordCounts[m_keyCount];
+        }
+
+        @Override
+        public List<String> getSuggestedWords(int numWords) {
+            if (m_keyCount == 0 || m_frontierSizes[m_keyCount] == 0 || numWords <= 0) {
+                return Collections.emptyList();
+            }
+
+            // Nodes enter the heap with their frequency bound and words with their exact
+            // frequency. A word is only taken once nothing left in the heap can beat it, and
+            // nodes win ties so that every word of equal frequency is in the heap by then.
+            m_heapSize = 0;
+            final int[] frontier = m_frontiers[m_keyCount];
+            for (int i = 0; i < m_frontierSizes[m_keyCount]; ++i) {
+                push(((long) m_trie.getMaxFrequency(frontier[i]) << 1) | 1, frontier[i]);
+            }
+
+            List<String> words = new ArrayList<>(numWords);
+            while (words.size() < numWords && m_heapSize > 0) {
+                final long key = m_heapKeys[0];
+                final int node = m_heapNodes[0];
+                pop();
+
+                if ((key & 1) == 0) {
+                    words.add(m_trie.getWordAt(node));
+                    continue;
+                }
+                if (m_trie.isWord(node)) {
+                    push((long) m_trie.getFrequency(m_trie.getWordIndex(node)) << 1, node);
+                }
+                final int end = m_trie.getChildEnd(node);
+                for (int child = m_trie.getFirstChild(node); child < end; ++child) {
+                    push(((long) m_trie.getMaxFrequency(child) << 1) | 1, child);
+                }
+            }
+
+            Collections.reverse(words);
+            return words;
+        }
+
+        private boolean isAbove(int lhs, int rhs) {
+            return m_heapKeys[lhs] > m_heapKeys[rhs] ||
+                    (m_heapKeys[lhs] == m_heapKeys[rhs] && m_heapNodes[lhs] < m_heapNodes[rhs]);
+        }
+
+        private void push(long key, int node) {
+            if (m_heapSize == m_heapKeys.length) {
+                m_heapKeys = Arrays.copyOf(m_heapKeys, m_heapSize * 2);
+                m_heapNodes = Arrays.copyOf(m_heapNodes, m_heapSize * 2);
+            }
+            int pos = m_heapSize++;
+            m_heapKeys[pos] = key;
+            m_heapNodes[pos] = node;
+            while (pos > 0 && isAbove(pos, (pos - 1) / 2)) {
+                swap(pos, (pos - 1) / 2);
+                pos = (pos - 1) / 2;
+            }
+        }
+
+        private void pop() {
+            --m_heapSize;
+            m_heapKeys[0] = m_heapKeys[m_heapSize];
+            m_heapNodes[0] = m_heapNodes[m_heapSize];
+            int pos = 0;
+            while (true) {
+                int top = pos;
+                final int left = pos * 2 + 1;
+                if (left < m_heapSize && isAbove(left, top)) {
+                    top = left;
+                }
+                if (left + 1 < m_heapSize && isAbove(left + 1, top)) {
+                    top = left + 1;
+                }
+                if (top == pos) {
+                    return;
+                }
+                swap(pos, top);
+                pos = top;
+            }
+        }
+
+        private void swap(int i, int j) {
+            final long key = m_heapKeys[i];
+            m_heapKeys[i] = m_heapKeys[j];
+            m_heapKeys[j] = key;
+            final int node = m_heapNodes[i];
+            m_heapNodes[i] = m_heapNodes[j];
+            m_heapNodes[j] = node;
+        }
+    }
+}
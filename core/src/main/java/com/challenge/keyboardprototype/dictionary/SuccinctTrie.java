@@ -0,0 +1,306 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * Compact letter trie over a whole dictionary, for word lists too large for a {@link KeyTrie}
+ * per layout.
+ *
+ * The shape of the trie is stored in level order (LOUDS): every node in breadth-first order
+ * contributes a one bit per child followed by a zero bit, which takes two bits per node and is
+ * navigated with rank and select on a {@link BitVector}. Each node also stores the letter
+ * leading into it, whether a word ends there, the number of words beneath it and an upper bound
+ * on their frequencies, all bit packed. Word frequencies are kept in a packed array in the order
+ * of the nodes they end at.
+ *
+ * The trie spells words rather than key signatures, so a single trie answers queries for any
+ * {@link KeyLayout}. It also stands in for the lexicon it was built from: word {@code i} is the
+ * {@code i}th word ending node, and its letters are read back by walking up to the root.
+ */
+public final class SuccinctTrie implements Lexicon {
+    public static final int ROOT = 0;
+
+    // Most nodes have only a few words beneath them, so larger counts are kept in overflow tables
+    private static final int COUNT_OVERFLOW = 15;
+    private static final int FREQUENCY_LEVELS = 64;
+
+    private final char[] m_alphabet;
+    private final BitVector m_louds;
+    private final BitVector m_terminals;
+    private final PackedIntArray m_labels;
+    private final PackedIntArray m_wordCounts;
+    private final int[] m_overflowNodes;
+    private final int[] m_overflowCounts;
+    private final PackedIntArray m_frequencyLevels;
+    private final int[] m_frequencyBounds;
+    private final PackedIntArray m_frequencies;
+
+    private SuccinctTrie(char[] alphabet, BitVector louds, BitVector terminals, PackedIntArray labels,
+                         PackedIntArray wordCounts, int[] overflowNodes, int[] overflowCounts,
+                         PackedIntArray frequencyLevels, int[] frequencyBounds, PackedIntArray frequencies) {
+        m_alphabet = alphabet;
+        m_louds = louds;
+        m_terminals = terminals;
+        m_labels = labels;
+        m_wordCounts = wordCounts;
+        m_overflowNodes = overflowNodes;
+        m_overflowCounts = overflowCounts;
+        m_frequencyLevels = frequencyLevels;
+        m_frequencyBounds = frequencyBounds;
+        m_frequencies = frequencies;
+    }
+
+    /**
+     * Builds a trie from a lexicon whose words are unique and in alphabetical order, such as
+     * {@link ArrayLexicon#sorted}. The lexicon is not referenced afterwards.
+     */
+    public static SuccinctTrie build(Lexicon lexicon) {
+        final int numWords = lexicon.size();
+        boolean[] usedChars = new boolean[Character.MAX_VALUE + 1];
+        int maxFrequency = 0;
+        for (int i = 0; i < numWords; ++i) {
+            String word = lexicon.getWord(i);
+            if (i > 0 && lexicon.getWord(i - 1).compareTo(word) >= 0) {
+                throw new IllegalArgumentException("Words must be unique and sorted: " + word);
+            }
+            for (int j = 0; j < word.length(); ++j) {
+                usedChars[word.charAt(j)] = true;
+            }
+            maxFrequency = Math.max(maxFrequency, lexicon.getFrequency(i));
+        }
+
+        StringBuilder alphabet = new StringBuilder();
+        for (int c = 0; c < usedChars.length; ++c) {
+            if (usedChars[c]) {
+                alphabet.append((char) c);
+            }
+        }
+        final char[] chars = alphabet.toString().toCharArray();
+        final int[] frequencyBounds = getFrequencyBounds(maxFrequency);
+
+        // Nodes are appended in breadth-first order, each covering the range of words that share
+        // its prefix, and are written out as their children are found
+        Builder builder = new Builder();
+        builder.addNode(0, numWords, 0, 0);
+        BitVector.Builder louds = new BitVector.Builder();
+        BitVector.Builder terminals = new BitVector.Builder();
+        int[] frequencies = new int[numWords];
+        int numTerminals = 0;
+
+        for (int node = 0; node < builder.m_size; ++node) {
+            int start = builder.m_rangeStarts[node];
+            final int end = builder.m_rangeEnds[node];
+            final int depth = builder.m_depths[node];
+
+            int maxInRange = 0;
+            for (int i = start; i < end; ++i) {
+                maxInRange = Math.max(maxInRange, lexicon.getFrequency(i));
+            }
+            builder.m_wordCounts[node] = end - start;
+            builder.m_frequencyLevels[node] = getFrequencyLevel(frequencyBounds, maxInRange);
+
+            // A word that ends here sorts before every longer word sharing its prefix
+            final boolean terminal = start < end && lexicon.getWord(start).length() == depth;
+            terminals.add(terminal);
+            if (terminal) {
+                frequencies[numTerminals++] = lexicon.getFrequency(start);
+                ++start;
+            }
+
+            while (start < end) {
+                final char c = lexicon.getWord(start).charAt(depth);
+                int childEnd = start + 1;
+                while (childEnd < end && lexicon.getWord(childEnd).charAt(depth) == c) {
+                    ++childEnd;
+                }
+                builder.addNode(start, childEnd, depth + 1, Arrays.binarySearch(chars, c));
+                louds.add(true);
+                start = childEnd;
+            }
+            louds.add(false);
+        }
+
+        final int numNodes = builder.m_size;
+        int numOverflows = 0;
+        for (int node = 0; node < numNodes; ++node) {
+            if (builder.m_wordCounts[node] >= COUNT_OVERFLOW) {
+                ++numOverflows;
+            }
+        }
+        int[] overflowNodes = new int[numOverflows];
+        int[] overflowCounts = new int[numOverflows];
+        numOverflows = 0;
+        for (int node = 0; node < numNodes; ++node) {
+            if (builder.m_wordCounts[node] >= COUNT_OVERFLOW) {
+                overflowNodes[numOverflows] = node;
+                overflowCounts[numOverflows++] = builder.m_wordCounts[node];
+                builder.m_wordCounts[node] = COUNT_OVERFLOW;
+            }
+        }
+
+        return new SuccinctTrie(chars, louds.build(), terminals.build(),
+                PackedIntArray.of(builder.m_labels, numNodes),
+                PackedIntArray.of(builder.m_wordCounts, numNodes), overflowNodes, overflowCounts,
+                PackedIntArray.of(builder.m_frequencyLevels, numNodes), frequencyBounds,
+                PackedIntArray.of(frequencies, numTerminals));
+    }
+
+    /**
+     * Spreads {@link #FREQUENCY_LEVELS} bounds logarithmically between 0 and the highest
+     * frequency. The bound stored for a node only needs to be close enough to skip most nodes
+     * that cannot contribute a suggestion.
+     */
+    private static int[] getFrequencyBounds(int maxFrequency) {
+        int[] bounds = new int[FREQUENCY_LEVELS];
+        final double scale = Math.log1p(maxFrequency) / (FREQUENCY_LEVELS - 1);
+        for (int level = 1; level < FREQUENCY_LEVELS; ++level) {
+            final double bound = Math.ceil(Math.expm1(level * scale));
+            bounds[level] = (int) Math.min(maxFrequency, Math.max(bounds[level - 1], bound));
+        }
+        bounds[FREQUENCY_LEVELS - 1] = maxFrequency;
+        return bounds;
+    }
+
+    /**
+     * @return the lowest level whose bound is at least {@code frequency}
+     */
+    private static int getFrequencyLevel(int[] bounds, int frequency) {
+        int low = 0;
+        int high = bounds.length - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (bounds[mid] >= frequency) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public int size() {
+        return m_frequencies.size();
+    }
+
+    @Override
+    public String getWord(int index) {
+        return getWordAt(m_terminals.select1(index));
+    }
+
+    @Override
+    public int getFrequency(int index) {
+        return m_frequencies.get(index);
+    }
+
+    public int getNodeCount() {
+        return m_terminals.size();
+    }
+
+    /**
+     * @return the distinct characters of all words in ascending order, indexed by label
+     */
+    char[] getAlphabet() {
+        return m_alphabet;
+    }
+
+    /**
+     * @return the index into {@link #getAlphabet} of the letter leading into the node
+     */
+    int getLabel(int node) {
+        return m_labels.get(node);
+    }
+
+    /**
+     * The children of a node are numbered from this up to {@link #getChildEnd}.
+     */
+    int getFirstChild(int node) {
+        return node == ROOT ? 1 : getChildEnd(node - 1);
+    }
+
+    int getChildEnd(int node) {
+        return m_louds.select0(node) - node + 1;
+    }
+
+    int getParent(int node) {
+        return m_louds.rank0(m_louds.select1(node - 1));
+    }
+
+    /**
+     * @return true if a word ends at the node
+     */
+    boolean isWord(int node) {
+        return m_terminals.get(node);
+    }
+
+    /**
+     * @return the lexicon index of the word ending at the node
+     */
+    int getWordIndex(int node) {
+        return m_terminals.rank1(node);
+    }
+
+    /**
+     * @return the number of words that end at the node or beneath it
+     */
+    int getWordCount(int node) {
+        final int count = m_wordCounts.get(node);
+        return count < COUNT_OVERFLOW ? count : m_overflowCounts[Arrays.binarySearch(m_overflowNodes, node)];
+    }
+
+    /**
+     * @return a frequency at least as high as that of any word at or beneath the node
+     */
+    int getMaxFrequency(int node) {
+        return m_frequencyBounds[m_frequencyLevels.get(node)];
+    }
+
+    /**
+     * @return the word spelled by the path from the root to the node
+     */
+    String getWordAt(int node) {
+        StringBuilder word = new StringBuilder();
+        while (node != ROOT) {
+            word.append(m_alphabet[m_labels.get(node)]);
+            node = getParent(node);
+        }
+        return word.reverse().toString();
+    }
+
+    public long getMemoryUsage() {
+        return m_alphabet.length * 2L + m_louds.getMemoryUsage() + m_terminals.getMemoryUsage() +
+                m_labels.getMemoryUsage() + m_wordCounts.getMemoryUsage() +
+                (m_overflowNodes.length + m_overflowCounts.length + m_frequencyBounds.length) * 4L +
+                m_frequencyLevels.getMemoryUsage() + m_frequencies.getMemoryUsage();
+    }
+
+    /**
+     * Node tables that grow while a trie is being built.
+     */
+    private static final class Builder {
+        int[] m_rangeStarts = new int[1024];
+        int[] m_rangeEnds = new int[1024];
+        int[] m_depths = new int[1024];
+        int[] m_labels = new int[1024];
+        int[] m_wordCounts = new int[1024];
+        int[] m_frequencyLevels = new int[1024];
+        int m_size;
+
+        void addNode(int rangeStart, int rangeEnd, int depth, int label) {
+            if (m_size == m_labels.length) {
+                final int capacity = m_size * 2;
+                m_rangeStarts = Arrays.copyOf(m_rangeStarts, capacity);
+                m_rangeEnds = Arrays.copyOf(m_rangeEnds, capacity);
+                m_depths = Arrays.copyOf(m_depths, capacity);
+                m_labels = Arrays.copyOf(m_labels, capacity);
+                m_wordCounts = Arrays.copyOf(m_wordCounts, capacity);
+                m_frequencyLevels = Arrays.copyOf(m_frequencyLevels, capacity);
+            }
+            m_rangeStarts[m_size] = rangeStart;
+            m_rangeEnds[m_size] = rangeEnd;
+            m_depths[m_size] = depth;
+            m_labels[m_size] = label;
+            m_size++;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.challenge.keyboardprototype.dictionary;
+
+/**
+ * A backend that suggests dictionary words for ambiguous key sequences.
+ *
+ * Implementations must be thread safe, although the sessions they create are not.
+ */
+public interface SuggestionEngine {
+    /**
+     * @return a short name identifying the backend in logs and metrics
+     */
+    String getName();
+
+    /**
+     * @return a new session for typing one word on the given layout
+     */
+    SuggestionSession newSession(KeyLayout layout);
+
+    /**
+     * @return the heap used by the engine's own indexes in bytes, not counting the lexicon
+     */
+    long getHeapUsage();
+}
@@ -0,0 +1,34 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.List;
+
+/**
+ * The keys typed so far for one word, and the words they suggest.
+ *
+ * Sessions are not thread safe.
+ */
+public interface SuggestionSession {
+    int getKeyCount();
+
+    /**
+     * Adds one key to the word.
+     *
+     * @param keyIndex index of the key in the session's layout, or -1 for a key that types no letter
+     * @return the number of words that still match
+     */
+    int pressKey(int keyIndex);
+
+    void removeLastKey();
+
+    void reset();
+
+    /**
+     * @return the number of words that match the keys typed so far, or 0 if no key was typed
+     */
+    int getCandidateCount();
+
+    /**
+     * @return up to {@code numWords} matching words in ascending order of frequency, so the best match is last
+     */
+    List<String> getSuggestedWords(int numWords);
+}
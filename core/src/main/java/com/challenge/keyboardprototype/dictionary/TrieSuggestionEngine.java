@@ -0,0 +1,59 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Suggests words with a {@link KeyTrie} per layout.
+ *
+ * Tries are taken from a {@link DictionaryFile} when it has one for the layout, otherwise they are
+ * built from the lexicon the first time the layout is used and kept.
+ */
+public final class TrieSuggestionEngine implements SuggestionEngine {
+    /** Upper bound on the heap used by a built trie per word, measured over several dictionaries. */
+    public static final int ESTIMATED_BYTES_PER_WORD = 320;
+
+    private final Lexicon m_lexicon;
+    private final DictionaryFile m_dictionaryFile;
+    private final int m_topCount;
+    private final Map<KeyLayout, KeyTrie> m_tries = new HashMap<>();
+    private long m_heapUsage;
+
+    /**
+     * @param dictionaryFile prebuilt tries over {@code lexicon}, or null to build them all
+     * @param topCount the number of best words stored at every node of built tries
+     */
+    public TrieSuggestionEngine(Lexicon lexicon, DictionaryFile dictionaryFile, int topCount) {
+        m_lexicon = lexicon;
+        m_dictionaryFile = dictionaryFile;
+        m_topCount = topCount;
+    }
+
+    @Override
+    public String getName() {
+        return m_dictionaryFile != null ? "trie-mapped" : "trie";
+    }
+
+    public synchronized KeyTrie getTrie(KeyLayout layout) {
+        KeyTrie trie = m_tries.get(layout);
+        if (trie == null && m_dictionaryFile != null) {
+            trie = m_dictionaryFile.getTrie(layout);
+        }
+        if (trie == null) {
+            trie = KeyTrie.build(m_lexicon, layout, m_topCount);
+            m_heapUsage += trie.getMemoryUsage();
+        }
+        m_tries.put(layout, trie);
+        return trie;
+    }
+
+    @Override
+    public TypingSession newSession(KeyLayout layout) {
+        return new TypingSession(getTrie(layout));
+    }
+
+    @Override
+    public synchronized long getHeapUsage() {
+        return m_heapUsage;
+    }
+}
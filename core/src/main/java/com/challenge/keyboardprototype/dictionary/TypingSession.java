@@ -0,0 +1,91 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tracks the keys typed so far for one word and the words that can still match them.
+ *
+ * Each key press narrows the previous candidates by one key instead of searching the whole
+ * dictionary again. The node reached after every key is remembered, so removing keys or
+ * starting over costs nothing. Once no word matches, later key presses are not looked up.
+ */
+public final class TypingSession implements SuggestionSession {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final KeyTrie m_trie;
+
+    // m_nodes[i] is the trie node for the first i keys, m_nodes[0] being the root
+    private int[] m_nodes = new int[INITIAL_CAPACITY + 1];
+    private int m_keyCount;
+
+    public TypingSession(KeyTrie trie) {
+        m_trie = trie;
+        m_nodes[0] = KeyTrie.ROOT;
+    }
+
+    public KeyTrie getTrie() {
+        return m_trie;
+    }
+
+    @Override
+    public int getKeyCount() {
+        return m_keyCount;
+    }
+
+    /**
+     * Narrows the candidates by one more key.
+     *
+     * @param keyIndex index of the key in the trie's layout, or -1 for a key that types no letter
+     * @return the number of words that still match
+     */
+    @Override
+    public int pressKey(int keyIndex) {
+        if (m_keyCount + 1 == m_nodes.length) {
+            m_nodes = Arrays.copyOf(m_nodes, m_nodes.length * 2);
+        }
+
+        int node = m_nodes[m_keyCount];
+        if (node != KeyTrie.NO_NODE) {
+            node = keyIndex < 0 ? KeyTrie.NO_NODE : m_trie.getChild(node, keyIndex);
+        }
+        m_nodes[++m_keyCount] = node;
+        return m_trie.getWordCount(node);
+    }
+
+    @Override
+    public void removeLastKey() {
+        if (m_keyCount > 0) {
+            --m_keyCount;
+        }
+    }
+
+    @Override
+    public void reset() {
+        m_keyCount = 0;
+    }
+
+    /**
+     * @return true if no word starts with the keys typed so far
+     */
+    public boolean isDeadEnd() {
+        return m_nodes[m_keyCount] == KeyTrie.NO_NODE;
+    }
+
+    @Override
+    public int getCandidateCount() {
+        return m_keyCount == 0 ? 0 : m_trie.getWordCount(m_nodes[m_keyCount]);
+    }
+
+    /**
+     * @return up to {@code numWords} candidates in ascending order of frequency, so the best match is last
+     */
+    @Override
+    public List<String> getSuggestedWords(int numWords) {
+        if (m_keyCount == 0 || isDeadEnd()) {
+            return Collections.emptyList();
+        }
+        return m_trie.getSuggestedWords(m_nodes[m_keyCount], numWords);
+    }
+}
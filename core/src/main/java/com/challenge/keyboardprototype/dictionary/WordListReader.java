@@ -0,0 +1,160 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streams {@code word,frequency} lines from a word list such as {@code dictionary.csv}.
+ *
+ * Lines are parsed straight out of a reusable character buffer: the only allocation per line
+ * is the lower case word itself. Blank lines are skipped.
+ */
+public final class WordListReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader m_reader;
+    private char[] m_buffer = new char[BUFFER_SIZE];
+    private int m_position;
+    private int m_limit;
+    private boolean m_eof;
+    private int m_lineNumber;
+
+    private String m_word;
+    private int m_frequency;
+
+    public WordListReader(Reader reader) {
+        m_reader = reader;
+    }
+
+    /**
+     * Advances to the next word.
+     *
+     * @return false once the end of the list has been reached
+     * @throws IOException if the underlying reader fails or a line is malformed
+     */
+    public boolean next() throws IOException {
+        int lineEnd;
+        while (true) {
+            lineEnd = findLineEnd();
+            if (lineEnd < 0) {
+                return false;
+            }
+            ++m_lineNumber;
+            if (!isBlank(m_position, lineEnd)) {
+                break;
+            }
+            skipTo(lineEnd);
+        }
+
+        int comma = m_position;
+        while (comma < lineEnd && m_buffer[comma] != ',') {
+            ++comma;
+        }
+        if (comma == m_position || comma == lineEnd) {
+            throw malformed();
+        }
+
+        for (int i = m_position; i < comma; ++i) {
+            m_buffer[i] = Character.toLowerCase(m_buffer[i]);
+        }
+        m_word = new String(m_buffer, m_position, comma - m_position);
+        m_frequency = parseFrequency(comma + 1, lineEnd);
+
+        skipTo(lineEnd);
+        return true;
+    }
+
+    public String getWord() {
+        return m_word;
+    }
+
+    public int getFrequency() {
+        return m_frequency;
+    }
+
+    @Override
+    public void close() throws IOException {
+        m_reader.close();
+    }
+
+    private int parseFrequency(int start, int end) throws IOException {
+        // Tolerate a trailing carriage return
+        if (end > start && m_buffer[end - 1] == '\r') {
+            --end;
+        }
+        if (start == end) {
+            throw malformed();
+        }
+
+        long value = 0;
+        for (int i = start; i < end; ++i) {
+            char c = m_buffer[i];
+            if (c < '0' || c > '9') {
+                throw malformed();
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw malformed();
+            }
+        }
+        return (int) value;
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; ++i) {
+            if (!Character.isWhitespace(m_buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipTo(int lineEnd) {
+        m_position = Math.min(lineEnd + 1, m_limit);
+    }
+
+    /**
+     * @return the index of the newline ending the current line (or the end of the data when the
+     *         last line has none), or -1 when there are no more lines
+     */
+    private int findLineEnd() throws IOException {
+        int scanned = m_position;
+        while (true) {
+            for (int i = scanned; i < m_limit; ++i) {
+                if (m_buffer[i] == '\n') {
+                    return i;
+                }
+            }
+            scanned = m_limit;
+
+            if (m_eof) {
+                return m_position < m_limit ? m_limit : -1;
+            }
+
+            // Move the partial line to the front of the buffer, growing it for very long lines
+            int remaining = m_limit - m_position;
+            if (remaining == m_buffer.length) {
+                char[] grown = new char[m_buffer.length * 2];
+                System.arraycopy(m_buffer, m_position, grown, 0, remaining);
+                m_buffer = grown;
+            } else {
+                System.arraycopy(m_buffer, m_position, m_buffer, 0, remaining);
+            }
+            scanned -= m_position;
+            m_position = 0;
+            m_limit = remaining;
+
+            int read = m_reader.read(m_buffer, m_limit, m_buffer.length - m_limit);
+            if (read < 0) {
+                m_eof = true;
+            } else {
+                m_limit += read;
+            }
+        }
+    }
+
+    private IOException malformed() {
+        return new IOException("Malformed word list entry on line " + m_lineNumber);
+    }
+}
@@ -0,0 +1,62 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a queue of random words from a {@link WordSampler} topped up in the background, so the
+ * next word is ready as soon as it is asked for.
+ */
+public final class WordPrefetcher {
+    private final WordSampler m_sampler;
+    private final Executor m_executor;
+    private final Random m_random = new Random();
+    private final BlockingQueue<String> m_words;
+    private final AtomicBoolean m_refillPending = new AtomicBoolean();
+
+    private final Runnable m_refill = new Runnable() {
+        @Override
+        public void run() {
+            m_refillPending.set(false);
+            while (m_words.remainingCapacity() > 0) {
+                String word = m_sampler.sample(m_random);
+                if (word == null || !m_words.offer(word)) {
+                    break;
+                }
+            }
+        }
+    };
+
+    /**
+     * @param capacity number of words to keep ready
+     * @param executor runs the refills, which must not block the caller of {@link #next}
+     */
+    public WordPrefetcher(WordSampler sampler, int capacity, Executor executor) {
+        m_sampler = sampler;
+        m_executor = executor;
+        m_words = new ArrayBlockingQueue<>(capacity);
+        requestRefill();
+    }
+
+    /**
+     * @return the next random word, or null if the lexicon is empty
+     */
+    public String next() {
+        String word = m_words.poll();
+        if (word == null) {
+            // The queue ran dry, so sample on the caller's thread rather than wait
+            word = m_sampler.sample(m_random);
+        }
+        requestRefill();
+        return word;
+    }
+
+    private void requestRefill() {
+        if (m_refillPending.compareAndSet(false, true)) {
+            m_executor.execute(m_refill);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.challenge.keyboardprototype.dictionary;
+
+import java.util.Random;
+
+/**
+ * Picks random words from a {@link Lexicon} in constant time.
+ *
+ * Frequency weighted sampling uses Vose's alias method: every word owns one slot of a table, and
+ * each slot splits its probability between its own word and one alias word. A sample picks a
+ * slot uniformly and then flips a biased coin between the two.
+ */
+public final class WordSampler {
+    public enum Mode {
+        /** Every word is equally likely. */
+        UNIFORM,
+        /** Words are picked in proportion to their frequency. */
+        FREQUENCY_WEIGHTED,
+    }
+
+    private final Lexicon m_lexicon;
+    private final Mode m_mode;
+    private final double[] m_probability;
+    private final int[] m_alias;
+
+    public WordSampler(Lexicon lexicon, Mode mode) {
+        m_lexicon = lexicon;
+        m_mode = mode;
+
+        if (mode == Mode.FREQUENCY_WEIGHTED && lexicon.size() > 0) {
+            m_probability = new double[lexicon.size()];
+            m_alias = new int[lexicon.size()];
+            buildAliasTable();
+        } else {
+            m_probability = null;
+            m_alias = null;
+        }
+    }
+
+    public Mode getMode() {
+        return m_mode;
+    }
+
+    private void buildAliasTable() {
+        final int numWords = m_lexicon.size();
+        double total = 0;
+        for (int i = 0; i < numWords; ++i) {
+            total += m_lexicon.getFrequency(i);
+        }
+
+        // Scale so the average slot holds exactly 1, then pair each underfull slot with an
+        // overfull one that tops it up. Both work lists share one array, growing from each end.
+        int[] work = new int[numWords];
+        int numSmall = 0;
+        int largeStart = numWords;
+        for (int i = 0; i < numWords; ++i) {
+            m_probability[i] = total > 0 ? (double) m_lexicon.getFrequency(i) * numWords / total : 1.0;
+            if (m_probability[i] < 1.0) {
+                work[numSmall++] = i;
+            } else {
+                work[--largeStart] = i;
+            }
+        }
+
+        while (numSmall > 0 && largeStart < numWords) {
+            int small = work[--numSmall];
+            int large = work[largeStart++];
+
+            m_alias[small] = large;
+            m_probability[large] -= 1.0 - m_probability[small];
+            if (m_probability[large] < 1.0) {
+                work[numSmall++] = large;
+            } else {
+                work[--largeStart] = large;
+            }
+        }
+
+        // Whatever is left is full up to rounding error
+        while (numSmall > 0) {
+            m_probability[work[--numSmall]] = 1.0;
+        }
+        while (largeStart < numWords) {
+            m_probability[work[largeStart++]] = 1.0;
+        }
+    }
+
+    /**
+     * @return the index of a random word, or -1 if the lexicon is empty
+     */
+    public int sampleIndex(Random random) {
+        final int numWords = m_lexicon.size();
+        if (numWords == 0) {
+            return -1;
+        }
+
+        int slot = random.nextInt(numWords);
+        if (m_alias == null || random.nextDouble() < m_probability[slot]) {
+            return slot;
+        }
+        return m_alias[slot];
+    }
+
+    /**
+     * @return a random word, or null if the lexicon is empty
+     */
+    public String sample(Random random) {
+        int index = sampleIndex(random);
+        return index < 0 ? null : m_lexicon.getWord(index);
+    }
+}
@@ -0,0 +1,123 @@
+package com.challenge.keyboardprototype.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed capacity ring buffer of key press events, written by one thread and drained by another.
+ *
+ * Events are stored in preallocated parallel arrays, so recording never allocates, locks or
+ * blocks. When the buffer is full new events are dropped and counted rather than overwriting
+ * events that have not been drained yet.
+ */
+public final class KeystrokeBuffer {
+    /**
+     * Receives drained events in the order they were recorded.
+     */
+    public interface Sink {
+        void onKeystroke(long trialId, long timestampNanos, char keyboardType, int keyIndex, float touchX,
+                         float touchY, int keyCount, int suggestionCount);
+    }
+
+    private final int m_mask;
+    private final long[] m_trialIds;
+    private final long[] m_timestamps;
+    private final char[] m_keyboardTypes;
+    private final int[] m_keyIndices;
+    private final float[] m_touchXs;
+    private final float[] m_touchYs;
+    private final int[] m_keyCounts;
+    private final int[] m_suggestionCounts;
+
+    // Total events ever recorded and drained, only advanced by the producer and consumer respectively
+    private final AtomicLong m_head = new AtomicLong();
+    private final AtomicLong m_tail = new AtomicLong();
+    private final AtomicLong m_dropped = new AtomicLong();
+
+    /**
+     * @param capacity the most events held before new ones are dropped, a power of two
+     */
+    public KeystrokeBuffer(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        m_mask = capacity - 1;
+        m_trialIds = new long[capacity];
+        m_timestamps = new long[capacity];
+        m_keyboardTypes = new char[capacity];
+        m_keyIndices = new int[capacity];
+        m_touchXs = new float[capacity];
+        m_touchYs = new float[capacity];
+        m_keyCounts = new int[capacity];
+        m_suggestionCounts = new int[capacity];
+    }
+
+    public int getCapacity() {
+        return m_mask + 1;
+    }
+
+    /**
+     * @return the number of events waiting to be drained
+     */
+    public int size() {
+        return (int) (m_head.get() - m_tail.get());
+    }
+
+    /**
+     * @return the number of events dropped so far because the buffer was full
+     */
+    public long getDroppedCount() {
+        return m_dropped.get();
+    }
+
+    /**
+     * Records one event. Must only be called from the producer thread.
+     *
+     * @param timestampNanos monotonic time of the key press
+     * @param touchX where the key was touched, or {@link Float#NaN} if unknown
+     * @param touchY where the key was touched, or {@link Float#NaN} if unknown
+     * @param keyCount the number of keys pressed for the current word, including this one
+     * @param suggestionCount the number of words matching the keys pressed so far
+     * @return false if the buffer was full and the event was dropped
+     */
+    public boolean record(long trialId, long timestampNanos, char keyboardType, int keyIndex, float touchX,
+                          float touchY, int keyCount, int suggestionCount) {
+        final long head = m_head.get();
+        if (head - m_tail.get() > m_mask) {
+            m_dropped.incrementAndGet();
+            return false;
+        }
+
+        final int slot = (int) head & m_mask;
+        m_trialIds[slot] = trialId;
+        m_timestamps[slot] = timestampNanos;
+        m_keyboardTypes[slot] = keyboardType;
+        m_keyIndices[slot] = keyIndex;
+        m_touchXs[slot] = touchX;
+        m_touchYs[slot] = touchY;
+        m_keyCounts[slot] = keyCount;
+        m_suggestionCounts[slot] = suggestionCount;
+
+        // Publishes the slot to the consumer
+        m_head.lazySet(head + 1);
+        return true;
+    }
+
+    /**
+     * Passes every waiting event to the sink. Must only be called from the consumer thread.
+     *
+     * @return the number of events drained
+     */
+    public int drainTo(Sink sink) {
+        final long tail = m_tail.get();
+        final long head = m_head.get();
+        for (long i = tail; i < head; ++i) {
+            final int slot = (int) i & m_mask;
+            sink.onKeystroke(m_trialIds[slot], m_timestamps[slot], m_keyboardTypes[slot], m_keyIndices[slot],
+                    m_touchXs[slot], m_touchYs[slot], m_keyCounts[slot], m_suggestionCounts[slot]);
+        }
+
+        // Hands the slots back to the producer
+        m_tail.lazySet(head);
+        return (int) (head - tail);
+    }
+}
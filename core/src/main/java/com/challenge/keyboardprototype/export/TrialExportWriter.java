@@ -0,0 +1,101 @@
+package com.challenge.keyboardprototype.export;
+
+import com.opencsv.CSVWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Writes trial data rows in the CSV format used for analysis, one row per trial.
+ *
+ * The row array, date and timestamp formatter are reused for every row, so a writer must only be
+ * used from one thread. The caller should pass a buffered writer.
+ */
+public final class TrialExportWriter implements Closeable {
+    public static final String TIMESTAMP_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+
+    private static final String[] HEADER = {
+            // Session fields
+            "session_id",
+            "participant_id",
+            "session_start",
+            "status,",
+            // Trial fields
+            "trial_id",
+            "keyboard_type",
+            "target_word",
+            "entered_word",
+            "entry_method",
+            "trial_start",
+            "trial_end",
+            "duration_ms",
+    };
+
+    private final CSVWriter m_out;
+    private final String[] m_row = new String[HEADER.length];
+    private final SimpleDateFormat m_timestampFormat = new SimpleDateFormat(TIMESTAMP_FORMAT);
+    private final Date m_date = new Date();
+
+    public TrialExportWriter(Writer writer) {
+        m_out = new CSVWriter(writer);
+    }
+
+    public void writeHeader() {
+        m_out.writeNext(HEADER);
+    }
+
+    /**
+     * @param sessionStarted whether the session got past its created state
+     * @param trialEnd the trial's end time, or 0 if the trial never ended
+     */
+    public void writeRow(long sessionId,
+                         String participantId,
+                         boolean sessionStarted,
+                         long sessionStart,
+                         String sessionStatus,
+                         long trialId,
+                         String keyboardType,
+                         String targetWord,
+                         String enteredWord,
+                         String entryMethod,
+                         long trialStart,
+                         long trialEnd) {
+        final boolean trialEnded = trialEnd != 0;
+
+        m_row[0] = Long.toString(sessionId);
+        m_row[1] = participantId;
+        m_row[2] = sessionStarted ? formatTimestamp(sessionStart) : null;
+        m_row[3] = sessionStatus;
+        m_row[4] = Long.toString(trialId);
+        m_row[5] = keyboardType;
+        m_row[6] = targetWord;
+        m_row[7] = enteredWord;
+        m_row[8] = trialEnded ? entryMethod : null;
+        m_row[9] = trialEnded ? formatTimestamp(trialStart) : null;
+        m_row[10] = trialEnded ? formatTimestamp(trialEnd) : null;
+        m_row[11] = trialEnded ? Integer.toString((int) (trialEnd - trialStart)) : null;
+        m_out.writeNext(m_row);
+    }
+
+    private String formatTimestamp(long timestamp) {
+        m_date.setTime(timestamp);
+        return m_timestampFormat.format(m_date);
+    }
+
+    /**
+     * Flushes and closes the underlying writer.
+     *
+     * @throws IOException if any row could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        boolean failed = m_out.checkError();
+        m_out.close();
+        if (failed) {
+            throw new IOException("Failed to write trial data.");
+        }
+    }
+}
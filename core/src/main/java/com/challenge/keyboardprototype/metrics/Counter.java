@@ -0,0 +1,25 @@
+package com.challenge.keyboardprototype.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free count of events.
+ */
+public final class Counter {
+    private final AtomicLong m_count = new AtomicLong();
+
+    Counter() {
+    }
+
+    public void increment() {
+        m_count.incrementAndGet();
+    }
+
+    public void add(long amount) {
+        m_count.addAndGet(amount);
+    }
+
+    public long get() {
+        return m_count.get();
+    }
+}
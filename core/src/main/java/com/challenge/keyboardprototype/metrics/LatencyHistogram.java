@@ -0,0 +1,141 @@
+package com.challenge.keyboardprototype.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in fixed, log-linear microsecond buckets.
+ *
+ * Every power of two is split into {@link #SUB_BUCKETS} equal buckets, so percentiles are exact
+ * below {@code SUB_BUCKETS} microseconds and within 12.5% above that. Durations longer than about
+ * an hour all land in the last bucket.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 32;
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray m_buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong m_count = new AtomicLong();
+    private final AtomicLong m_totalMicros = new AtomicLong();
+    private final AtomicLong m_maxMicros = new AtomicLong();
+
+    LatencyHistogram() {
+    }
+
+    public void record(long duration, TimeUnit unit) {
+        recordMicros(unit.toMicros(duration));
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}, which must come from {@link System#nanoTime}.
+     */
+    public void recordSince(long startNanos) {
+        recordMicros((System.nanoTime() - startNanos) / 1000);
+    }
+
+    private void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        m_buckets.incrementAndGet(bucketOf(micros));
+        m_count.incrementAndGet();
+        m_totalMicros.addAndGet(micros);
+
+        long max = m_maxMicros.get();
+        while (micros > max && !m_maxMicros.compareAndSet(max, micros)) {
+            max = m_maxMicros.get();
+        }
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if (magnitude >= MAX_MAGNITUDE) {
+            return BUCKET_COUNT - 1;
+        }
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((micros >> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the largest duration in microseconds that falls into the bucket
+     */
+    static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+        final long lower = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    public long getCount() {
+        return m_count.get();
+    }
+
+    /**
+     * @return a consistent copy of the histogram for computing statistics
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            counts[i] = m_buckets.get(i);
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, m_totalMicros.get(), m_maxMicros.get());
+    }
+
+    /**
+     * Statistics of a histogram at one point in time, all in microseconds.
+     */
+    public static final class Snapshot {
+        private final long[] m_counts;
+        private final long m_count;
+        private final long m_totalMicros;
+        private final long m_maxMicros;
+
+        Snapshot(long[] counts, long count, long totalMicros, long maxMicros) {
+            m_counts = counts;
+            m_count = count;
+            m_totalMicros = totalMicros;
+            m_maxMicros = maxMicros;
+        }
+
+        public long getCount() {
+            return m_count;
+        }
+
+        public long getMean() {
+            return m_count == 0 ? 0 : m_totalMicros / m_count;
+        }
+
+        public long getMax() {
+            return m_maxMicros;
+        }
+
+        /**
+         * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+         * @return an upper bound on the duration below which the given share of samples fall
+         */
+        public long getPercentile(double quantile) {
+            if (m_count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(quantile * m_count));
+            long seen = 0;
+            for (int i = 0; i < m_counts.length; ++i) {
+                seen += m_counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), m_maxMicros);
+                }
+            }
+            return m_maxMicros;
+        }
+    }
+}
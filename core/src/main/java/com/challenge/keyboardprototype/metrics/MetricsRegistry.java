@@ -0,0 +1,94 @@
+package com.challenge.keyboardprototype.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Named counters, latency histograms and gauges that can be written out as a plain text report.
+ *
+ * Looking a metric up by name is not free, so code on hot paths should look its metrics up once
+ * and keep them. Recording into a metric never locks.
+ */
+public final class MetricsRegistry {
+    /**
+     * A value that is read when the report is written, such as memory use.
+     */
+    public interface Gauge {
+        long getValue();
+    }
+
+    private final ConcurrentMap<String, Counter> m_counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> m_histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Gauge> m_gauges = new ConcurrentHashMap<>();
+
+    /**
+     * @return the name of a metric tagged with a value, e.g. {@code suggest.latency[QWERTY_NINE_KEY]}
+     */
+    public static String tagged(String name, Object tag) {
+        return name + '[' + tag + ']';
+    }
+
+    public Counter counter(String name) {
+        Counter counter = m_counters.get(name);
+        if (counter == null) {
+            Counter existing = m_counters.putIfAbsent(name, counter = new Counter());
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter;
+    }
+
+    public Counter counter(String name, Object tag) {
+        return counter(tagged(name, tag));
+    }
+
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = m_histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram existing = m_histograms.putIfAbsent(name, histogram = new LatencyHistogram());
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    public LatencyHistogram histogram(String name, Object tag) {
+        return histogram(tagged(name, tag));
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name.
+     */
+    public void registerGauge(String name, Gauge gauge) {
+        m_gauges.put(name, gauge);
+    }
+
+    /**
+     * Writes every metric in name order, one per line. Histogram values are in microseconds.
+     */
+    public void writeTo(Writer out) throws IOException {
+        for (Map.Entry<String, Gauge> entry : new TreeMap<>(m_gauges).entrySet()) {
+            out.write("gauge " + entry.getKey() + " " + entry.getValue().getValue() + "\n");
+        }
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(m_counters).entrySet()) {
+            out.write("counter " + entry.getKey() + " " + entry.getValue().get() + "\n");
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(m_histograms).entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            out.write("histogram " + entry.getKey() +
+                    " count=" + snapshot.getCount() +
+                    " mean=" + snapshot.getMean() +
+                    " p50=" + snapshot.getPercentile(0.50) +
+                    " p95=" + snapshot.getPercentile(0.95) +
+                    " p99=" + snapshot.getPercentile(0.99) +
+                    " max=" + snapshot.getMax() + "\n");
+        }
+        out.flush();
+    }
+}